@@ -0,0 +1,178 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Lets a single threaded AustraliaFirstAgent decide in seeded mid-game positions and reports its
+ * throughput. Random playouts of Risk are long, so a decision runs only a few simulations and the
+ * gate compares the rollout plies per second instead: it exits with 1 if they fall below the
+ * stored baseline by more than the tolerance. Baselines depend on the machine, so none is checked
+ * in; store one with --update-baseline on the machine that runs the gate.
+ */
+@Command(name = "agent-throughput", description = "Measure the throughput of AustraliaFirstAgent.")
+public class AgentThroughputBenchmark implements Callable<Integer> {
+
+  private static final String SIMULATIONS_PER_SECOND = "simulationsPerSecond";
+  private static final String PLIES_PER_SECOND = "rolloutPliesPerSecond";
+  private static final int NUMBER_OF_PLAYERS = 2;
+
+  @Option(names = {"-c", "--computation-time"},
+      description = "Milliseconds per decision (default: ${DEFAULT-VALUE})")
+  private long computationTime = 2000;
+
+  @Option(names = {"-n", "--positions"},
+      description = "Number of positions (default: ${DEFAULT-VALUE})")
+  private int numberOfPositions = 8;
+
+  @Option(names = {"-w", "--warmup"},
+      description = "Decisions before measuring (default: ${DEFAULT-VALUE})")
+  private int warmup = 2;
+
+  @Option(names = {"-s", "--seed"},
+      description = "Seed of the positions (default: ${DEFAULT-VALUE})")
+  private long seed = 42;
+
+  @Option(names = {"-b", "--baseline"}, description = "Properties file of the baseline")
+  private Path baseline;
+
+  @Option(names = {"-t", "--tolerance"},
+      description = "Allowed relative drop below the baseline (default: ${DEFAULT-VALUE})")
+  private double tolerance = 0.1;
+
+  @Option(names = "--update-baseline", description = "Store the measured throughput as baseline")
+  private boolean updateBaseline;
+
+  public static void main(String[] args) {
+    System.exit(new CommandLine(new AgentThroughputBenchmark()).execute(args));
+  }
+
+  @Override
+  public Integer call() throws IOException {
+    List<Risk> positions = positions();
+    for (int i = 0; i < warmup; i++) {
+      decide(positions.get(i % positions.size()));
+    }
+
+    long simulations = 0;
+    long expandedNodes = 0;
+    long rolloutPlies = 0;
+    long elapsedNanos = 0;
+    long allocatedBytes = 0;
+    System.out.printf("%8s %12s %12s %12s %10s %10s %14s%n", "Position", "Simulations",
+        "Sim/s", "Plies/s", "Nodes", "Depth", "Bytes/sim");
+    for (int i = 0; i < positions.size(); i++) {
+      long allocated = allocatedBytes();
+      SearchMetrics metrics = decide(positions.get(i));
+      allocated = allocatedBytes() - allocated;
+      System.out.printf("%8d %12d %12.1f %12.0f %10d %10.1f %14.0f%n", i,
+          metrics.getSimulations(), metrics.getSimulationsPerSecond(),
+          metrics.getRolloutPliesPerSecond(), metrics.getExpandedNodes(),
+          metrics.getAverageRolloutDepth(),
+          (double) allocated / Math.max(1, metrics.getSimulations()));
+      simulations += metrics.getSimulations();
+      expandedNodes += metrics.getExpandedNodes();
+      rolloutPlies += metrics.getRolloutPlies();
+      elapsedNanos += metrics.getElapsedNanos();
+      allocatedBytes += allocated;
+    }
+
+    double seconds = Math.max(1, elapsedNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+    double simulationsPerSecond = simulations / seconds;
+    double pliesPerSecond = rolloutPlies / seconds;
+    System.out.printf("%8s %12d %12.1f %12.0f %10d %10.1f %14.0f%n", "total", simulations,
+        simulationsPerSecond, pliesPerSecond, expandedNodes,
+        (double) rolloutPlies / Math.max(1, simulations),
+        (double) allocatedBytes / Math.max(1, simulations));
+
+    return compareToBaseline(simulationsPerSecond, pliesPerSecond);
+  }
+
+  private int compareToBaseline(double simulationsPerSecond, double pliesPerSecond)
+      throws IOException {
+    if (baseline == null) {
+      return 0;
+    }
+    Properties properties = new Properties();
+    if (updateBaseline) {
+      properties.setProperty(SIMULATIONS_PER_SECOND, String.format("%.1f", simulationsPerSecond));
+      properties.setProperty(PLIES_PER_SECOND, String.format("%.0f", pliesPerSecond));
+      try (Writer writer = Files.newBufferedWriter(baseline)) {
+        properties.store(writer, computationTime + "ms per decision");
+      }
+      System.out.printf("Stored baseline of %.0f rollout plies per second%n", pliesPerSecond);
+      return 0;
+    }
+    if (!Files.isRegularFile(baseline)) {
+      System.out.println("No baseline at " + baseline + ", nothing to compare with");
+      return 0;
+    }
+    try (Reader reader = Files.newBufferedReader(baseline)) {
+      properties.load(reader);
+    }
+    double expected = Double.parseDouble(properties.getProperty(PLIES_PER_SECOND));
+    if (pliesPerSecond < expected * (1D - tolerance)) {
+      System.out.printf("Throughput regressed: %.0f rollout plies per second, baseline %.0f%n",
+          pliesPerSecond, expected);
+      return 1;
+    }
+    System.out.printf("Throughput within %.0f%% of the baseline of %.0f rollout plies per second%n",
+        100D * tolerance, expected);
+    return 0;
+  }
+
+  private SearchMetrics decide(Risk position) {
+    AustraliaFirstAgent agent = new AustraliaFirstAgent(Math.sqrt(2), null, 0, 1);
+    agent.setUp(NUMBER_OF_PLAYERS, position.getCurrentPlayer());
+    agent.computeNextAction(new Risk(position), computationTime, TimeUnit.MILLISECONDS);
+    agent.tearDown();
+    return agent.getSearchMetrics();
+  }
+
+  /**
+   * Plays random games past their initial phases. The i-th position is taken at least 100 + 40 i
+   * actions into a game, once a player is to move.
+   */
+  private List<Risk> positions() {
+    Random random = new Random(seed);
+    List<Risk> positions = new ArrayList<>(numberOfPositions);
+    while (positions.size() < numberOfPositions) {
+      Risk game = new Risk(NUMBER_OF_PLAYERS);
+      int actions = 100 + 40 * positions.size();
+      for (int i = 0; !game.isGameOver() && (i < actions || game.getCurrentPlayer() < 0); i++) {
+        RiskAction action = game.getCurrentPlayer() < 0 ? game.determineNextAction(random)
+            : game.sampleRandomAction(random);
+        game = (Risk) game.doAction(action);
+      }
+      if (!game.isGameOver()) {
+        positions.add(game);
+      }
+    }
+    return positions;
+  }
+
+  private static long allocatedBytes() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threadMXBean)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return 0;
+  }
+}
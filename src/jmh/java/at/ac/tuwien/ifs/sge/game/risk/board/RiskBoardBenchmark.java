@@ -0,0 +1,94 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import at.ac.tuwien.ifs.sge.game.risk.configuration.RiskConfiguration;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Board queries the game and the agents ask in every position.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RiskBoardBenchmark {
+
+  @Param({"risk_default.yaml", "risk_simple_3.yaml"})
+  public String board;
+
+  private RiskBoard[] boards;
+  private int next;
+  // positions in which the player to move holds a set of cards
+  private RiskBoard[] tradeInBoards;
+  private int[] tradeInPlayers;
+  private int nextTradeIn;
+
+  @Setup
+  public void setUp() throws IOException {
+    RiskConfiguration configuration = RiskPositions.load(board);
+    Risk[] positions = RiskPositions.collect(configuration, game -> true, 42L);
+    boards = new RiskBoard[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      boards[i] = positions[i].getBoard();
+    }
+
+    positions = RiskPositions.collect(configuration,
+        game -> game.getBoard().couldTradeInCards(game.getCurrentPlayer()), 42L);
+    tradeInBoards = new RiskBoard[positions.length];
+    tradeInPlayers = new int[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      tradeInBoards[i] = positions[i].getBoard();
+      tradeInPlayers[i] = positions[i].getCurrentPlayer();
+    }
+  }
+
+  private int next() {
+    next = (next + 1) % boards.length;
+    return next;
+  }
+
+  @Benchmark
+  public RiskBoard copy() {
+    return new RiskBoard(boards[next()]);
+  }
+
+  @Benchmark
+  public int neighboringEnemyTerritories() {
+    RiskBoard riskBoard = boards[next()];
+    int enemies = 0;
+    for (int territoryId : riskBoard.getTerritoryIdArray()) {
+      enemies += riskBoard.neighboringEnemyTerritories(territoryId).size();
+    }
+    return enemies;
+  }
+
+  @Benchmark
+  public int getNrOfNeighboringEnemyTerritories() {
+    RiskBoard riskBoard = boards[next()];
+    int enemies = 0;
+    for (int territoryId : riskBoard.getTerritoryIdArray()) {
+      enemies += riskBoard.getNrOfNeighboringEnemyTerritories(territoryId);
+    }
+    return enemies;
+  }
+
+  @Benchmark
+  public Set<Set<Integer>> getTradeInSlots() {
+    nextTradeIn = (nextTradeIn + 1) % tradeInBoards.length;
+    return tradeInBoards[nextTradeIn].getTradeInSlots(tradeInPlayers[nextTradeIn]);
+  }
+}
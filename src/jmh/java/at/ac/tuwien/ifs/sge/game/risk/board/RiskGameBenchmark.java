@@ -0,0 +1,80 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import at.ac.tuwien.ifs.sge.game.Game;
+import java.io.IOException;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Applies actions to and generates actions for positions of one phase. Every invocation moves on
+ * to the next position, so that the results are averaged over many positions of the phase.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RiskGameBenchmark {
+
+  @Param({"risk_default.yaml", "risk_simple_3.yaml"})
+  public String board;
+
+  @Param({"REINFORCE", "ATTACK", "OCCUPY", "FORTIFY"})
+  public String phase;
+
+  private Risk[] positions;
+  private RiskAction[] actions;
+  private long[] buffer;
+  private Random random;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    positions = RiskPositions.collect(RiskPositions.load(board), RiskPositions.phase(phase), 42L);
+    actions = new RiskAction[positions.length];
+    random = new Random(42L);
+    for (int i = 0; i < positions.length; i++) {
+      actions[i] = RiskPositions.next(positions[i], random);
+    }
+    buffer = new long[1 << 12];
+  }
+
+  private int next() {
+    next = (next + 1) % positions.length;
+    return next;
+  }
+
+  @Benchmark
+  public Game<RiskAction, RiskBoard> doAction() {
+    int i = next();
+    return positions[i].doAction(actions[i]);
+  }
+
+  @Benchmark
+  public Set<RiskAction> getPossibleActions() {
+    return positions[next()].getPossibleActions();
+  }
+
+  @Benchmark
+  public int getPossibleActionsEncoded() {
+    return positions[next()].getPossibleActions(buffer);
+  }
+
+  @Benchmark
+  public RiskAction sampleRandomAction() {
+    return positions[next()].sampleRandomAction(random);
+  }
+}
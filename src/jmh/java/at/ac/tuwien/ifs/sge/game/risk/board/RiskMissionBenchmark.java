@@ -0,0 +1,54 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import at.ac.tuwien.ifs.sge.game.risk.configuration.RiskConfiguration;
+import at.ac.tuwien.ifs.sge.game.risk.util.PriestLogic;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Checks the missions of the players. Neither board file deals missions, so the European default
+ * configuration, the only one with missions, is measured next to them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RiskMissionBenchmark {
+
+  private static final String EUROPEAN = "european";
+
+  @Param({"risk_default.yaml", "risk_simple_3.yaml", EUROPEAN})
+  public String board;
+
+  private RiskBoard[] boards;
+  private int next;
+
+  @Setup
+  public void setUp() throws Exception {
+    RiskConfiguration configuration = EUROPEAN.equals(board)
+        ? RiskConfiguration.RISK_EUROPEAN_DEFAULT_CONFIG : RiskPositions.load(board);
+    Risk[] positions = RiskPositions.collect(configuration, game -> true, 42L);
+    boards = new RiskBoard[positions.length];
+    for (int i = 0; i < positions.length; i++) {
+      boards[i] = positions[i].getBoard();
+    }
+  }
+
+  @Benchmark
+  public PriestLogic missionFulfilled() {
+    next = (next + 1) % boards.length;
+    return boards[next].missionFulfilled(next % RiskPositions.NUMBER_OF_PLAYERS);
+  }
+}
@@ -0,0 +1,64 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Plays random games to the end the way the simulations of the agents do, from the start and
+ * from positions of running games.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RiskPlayoutBenchmark {
+
+  @Param({"risk_default.yaml", "risk_simple_3.yaml"})
+  public String board;
+
+  private Risk start;
+  private Risk[] positions;
+  private Random random;
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    start = new Risk(RiskPositions.load(board), RiskPositions.NUMBER_OF_PLAYERS);
+    positions = RiskPositions.collect(RiskPositions.load(board), game -> true, 42L);
+    random = new Random(42L);
+  }
+
+  private double[] playout(Risk position) {
+    Risk game = new Risk(position);
+    game.setUndoable(false);
+    for (int actions = 0; actions < RiskPositions.MAX_ACTIONS && !game.isGameOver(); actions++) {
+      game.apply(RiskPositions.next(game, random));
+    }
+    return game.getGameUtilityValue();
+  }
+
+  @Benchmark
+  public double[] playoutFromStart() {
+    return playout(start);
+  }
+
+  @Benchmark
+  public double[] playoutFromPosition() {
+    next = (next + 1) % positions.length;
+    return playout(positions[next]);
+  }
+}
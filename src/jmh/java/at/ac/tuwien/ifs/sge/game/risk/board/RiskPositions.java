@@ -0,0 +1,90 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import at.ac.tuwien.ifs.sge.game.risk.configuration.RiskConfiguration;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+/**
+ * Positions for the benchmarks. They are taken from random games with a fixed seed, so every run
+ * measures the same positions.
+ */
+final class RiskPositions {
+
+  static final int NUMBER_OF_PLAYERS = 2;
+  static final int POSITIONS = 256;
+  static final int MAX_ACTIONS = 10000;
+  private static final int MAX_GAMES = 2000;
+  // only every few matching positions are taken, so that they come from many games
+  private static final int SPREAD = 4;
+
+  private RiskPositions() {
+  }
+
+  /**
+   * Loads a board from the boards directory of the project. The jmh task passes its location as
+   * the system property risk.boards.
+   *
+   * @param board the file name of the board
+   * @return the configuration of the board
+   */
+  static RiskConfiguration load(String board) throws IOException {
+    Path path = Paths.get(System.getProperty("risk.boards", "boards"), board);
+    if (!Files.isRegularFile(path)) {
+      throw new IllegalArgumentException("Board not found: " + path.toAbsolutePath());
+    }
+    return (RiskConfiguration) RiskConfiguration.getYaml().load(Files.readString(path));
+  }
+
+  static Predicate<Risk> phase(String phase) {
+    switch (phase) {
+      case "REINFORCE":
+        return game -> game.getBoard().isReinforcementPhase();
+      case "ATTACK":
+        return game -> game.getBoard().isAttackPhase();
+      case "OCCUPY":
+        return game -> game.getBoard().isOccupyPhase();
+      case "FORTIFY":
+        return game -> game.getBoard().isFortifyPhase();
+      default:
+        throw new IllegalArgumentException("Unknown phase: " + phase);
+    }
+  }
+
+  /**
+   * Collects positions in which a player is to move and which match the filter.
+   *
+   * @param configuration the board to play on
+   * @param filter        which positions to take
+   * @param seed          the seed of the random games
+   * @return up to POSITIONS positions, fewer if MAX_GAMES games did not contain more
+   */
+  static Risk[] collect(RiskConfiguration configuration, Predicate<Risk> filter, long seed) {
+    Random random = new Random(seed);
+    List<Risk> positions = new ArrayList<>(POSITIONS);
+    for (int games = 0; games < MAX_GAMES && positions.size() < POSITIONS; games++) {
+      Risk game = new Risk(configuration, NUMBER_OF_PLAYERS);
+      for (int actions = 0; actions < MAX_ACTIONS && !game.isGameOver()
+          && positions.size() < POSITIONS; actions++) {
+        if (game.getCurrentPlayer() >= 0 && filter.test(game) && random.nextInt(SPREAD) == 0) {
+          positions.add(game);
+        }
+        game = (Risk) game.doAction(next(game, random));
+      }
+    }
+    if (positions.isEmpty()) {
+      throw new IllegalStateException("No matching position in " + MAX_GAMES + " games");
+    }
+    return positions.toArray(new Risk[0]);
+  }
+
+  static RiskAction next(Risk game, Random random) {
+    return game.getCurrentPlayer() < 0 ? game.determineNextAction(random)
+        : game.sampleRandomAction(random);
+  }
+}
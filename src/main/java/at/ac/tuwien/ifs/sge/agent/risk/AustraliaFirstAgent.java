@@ -12,7 +12,19 @@ import at.ac.tuwien.ifs.sge.util.Util;
 import at.ac.tuwien.ifs.sge.util.tree.DoubleLinkedTree;
 import at.ac.tuwien.ifs.sge.util.tree.Tree;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -23,6 +35,14 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 
 
 	private static final int MAX_PRINT_THRESHOLD = 97;
+	/**
+	 * System property naming a file the metrics of every decision are appended to as JSON lines.
+	 */
+	public static final String METRICS_LOG_PROPERTY = "australiafirst.metrics";
+	// a node with n plays is widened to at most ceil(WIDENING_CONSTANT * n^WIDENING_EXPONENT)
+	// children if its actions are expanded by their prior
+	private static final double WIDENING_CONSTANT = 1D;
+	private static final double WIDENING_EXPONENT = 0.5D;
 	private static int INSTANCE_NR_COUNTER = 1;
 
 	private final int instanceNr;
@@ -38,12 +58,24 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 	private Comparator<Tree<RiskGameNode<RiskAction>>> gameMcTreeMoveComparator;
 	private Comparator<RiskGameNode<RiskAction>> gameMcNodeMoveComparator;
 	private Comparator<RiskGameNode<RiskAction>> gameMcNodeGameComparator;
-	private Comparator<Tree<RiskGameNode<RiskAction>>> gameMcTreeGameComparator;
 
 	private Tree<RiskGameNode<RiskAction>> mcTree;
+	private final TranspositionTable transpositionTable;
+	private final int transpositionTableSize;
+
+	private final int threads;
+	private final Parallelism parallelism;
+	private final int playoutsPerLeaf;
+	private ExecutorService workers;
+	private SearchWorker[] searchWorkers = new SearchWorker[0];
+	private List<Tree<RiskGameNode<RiskAction>>> searchedRoots = Collections.emptyList();
 
 	private boolean isInitialPhase = true;
 
+	private volatile SearchMetrics metrics = new SearchMetrics();
+	private Path metricsLog;
+	private RolloutPolicy rolloutPolicy = new HeavyRolloutPolicy();
+
 	public AustraliaFirstAgent() {
 		this(null);
 	}
@@ -53,17 +85,82 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 	}
 
 	public AustraliaFirstAgent(double exploitationConstant, Logger log) {
+		this(exploitationConstant, log, 0);
+	}
+
+	/**
+	 * @param transpositionTableSize number of positions whose statistics are shared between
+	 *                               transposed nodes, 0 searches a plain tree
+	 */
+	public AustraliaFirstAgent(double exploitationConstant, Logger log, int transpositionTableSize) {
+		this(exploitationConstant, log, transpositionTableSize,
+				Runtime.getRuntime().availableProcessors());
+	}
+
+	public AustraliaFirstAgent(double exploitationConstant, Logger log, int transpositionTableSize,
+	                           int threads) {
+		this(exploitationConstant, log, transpositionTableSize, threads, Parallelism.ROOT);
+	}
+
+	public AustraliaFirstAgent(double exploitationConstant, Logger log, int transpositionTableSize,
+	                           int threads, Parallelism parallelism) {
+		this(exploitationConstant, log, transpositionTableSize, threads, parallelism, 1);
+	}
+
+	/**
+	 * @param transpositionTableSize number of positions whose statistics are shared between
+	 *                               transposed nodes, 0 searches a plain tree
+	 * @param threads                number of threads searching for the move
+	 * @param parallelism            whether the threads search trees of their own or one tree
+	 * @param playoutsPerLeaf        number of playouts run in parallel from every selected node on
+	 *                               the common ForkJoinPool
+	 */
+	public AustraliaFirstAgent(double exploitationConstant, Logger log, int transpositionTableSize,
+	                           int threads, Parallelism parallelism, int playoutsPerLeaf) {
 		super(log);
+		if (threads < 1) {
+			throw new IllegalArgumentException("At least one thread is needed, got " + threads);
+		}
+		if (playoutsPerLeaf < 1) {
+			throw new IllegalArgumentException(
+					"At least one playout per leaf is needed, got " + playoutsPerLeaf);
+		}
 		this.exploitationConstant = (1 + Math.sqrt(5)) / 2;
 		mcTree = new DoubleLinkedTree<>();
+		this.transpositionTableSize = transpositionTableSize;
+		transpositionTable = newTranspositionTable();
+		this.threads = threads;
+		this.parallelism = Objects.requireNonNull(parallelism);
+		this.playoutsPerLeaf = playoutsPerLeaf;
+		String metricsLog = System.getProperty(METRICS_LOG_PROPERTY);
+		this.metricsLog = metricsLog == null || metricsLog.isEmpty() ? null : Paths.get(metricsLog);
 		instanceNr = INSTANCE_NR_COUNTER++;
 	}
 
+	private TranspositionTable newTranspositionTable() {
+		return transpositionTableSize > 0 ? new TranspositionTable(transpositionTableSize) : null;
+	}
+
 	@Override
 	public void setUp(int numberOfPlayers, int playerId) {
 		super.setUp(numberOfPlayers, playerId);
 		mcTree.clear();
 		mcTree.setNode(new RiskGameNode());
+		if (transpositionTable != null) {
+			transpositionTable.clear();
+		}
+		searchWorkers = new SearchWorker[threads - 1];
+		for (int i = 0; i < searchWorkers.length; i++) {
+			searchWorkers[i] = new SearchWorker(new Random(random.nextLong()),
+					parallelism == Parallelism.ROOT ? newTranspositionTable() : null);
+		}
+		if (workers == null && searchWorkers.length > 0) {
+			workers = Executors.newFixedThreadPool(searchWorkers.length, r -> {
+				Thread thread = new Thread(r, this + "-worker");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
 
 		gameMcTreeUCTComparator = Comparator
 				.comparingDouble(t -> upperConfidenceBound(t, exploitationConstant));
@@ -77,10 +174,10 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 				.compare(o1.getNode(), o2.getNode());
 
 		gameMcNodeGameComparator = (o1, o2) -> gameComparator.compare(o1.getGame(), o2.getGame());
-		gameMcTreeGameComparator = (o1, o2) -> gameMcNodeGameComparator
-				.compare(o1.getNode(), o2.getNode());
 
-		gameMcTreeSelectionComparator = gameMcTreeUCTComparator.thenComparing(gameMcTreeGameComparator);
+		// comparing the games of tied children would compute the games of all unvisited children, so
+		// ties go to the child added first, which is the one with the best prior if there is one
+		gameMcTreeSelectionComparator = gameMcTreeUCTComparator;
 
 		gameMcNodeMoveComparator = gameMcNodePlayComparator.thenComparing(gameMcNodeWinComparator)
 				.thenComparing(gameMcNodeGameComparator);
@@ -91,19 +188,25 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 	@Override
 	public RiskAction computeNextAction(Risk game, long computationTime, TimeUnit timeUnit) {
 		super.setTimers(computationTime, timeUnit);
+		metrics = new SearchMetrics();
 		log.tra_("Searching for root of tree");
 		boolean foundRoot = Util.findRoot(mcTree, game);
+		mcTree.getNode().pin();
 		if (foundRoot) {
 			log._trace(", done.");
 		} else {
 			log._trace(", failed.");
 		}
+		metrics.setReusedTreeSize(foundRoot ? mcTree.size() : 0);
 
 		log.tra_("Check if best move will eventually end game: ");
-		if (sortPromisingCandidates(mcTree, gameMcNodeMoveComparator.reversed())) {
+		if (sortPromisingCandidates(mcTree,
+				gameMcNodePlayComparator.thenComparing(gameMcNodeWinComparator).reversed())) {
 			log._trace("Yes");
-			return Collections.max(mcTree.getChildren(), gameMcTreeMoveComparator).getNode().getGame()
-					.getPreviousAction();
+			searchedRoots = Collections.singletonList(mcTree);
+			finishMetrics(Math.max(1, System.nanoTime() - START_TIME), mcTree.size());
+			return Collections.max(mcTree.getChildren(), gameMcTreeMoveComparator).getNode()
+					.getAction();
 		}
 		log._trace("No");
 
@@ -117,6 +220,17 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 			isInitialPhase = false;
 		}
 
+		List<Future<Tree<RiskGameNode<RiskAction>>>> searches = new ArrayList<>(searchWorkers.length);
+		for (SearchWorker worker : searchWorkers) {
+			if (parallelism == Parallelism.ROOT) {
+				// copying marks the shared state of the game, so every worker gets its own copy from here
+				Risk root = new Risk(game);
+				searches.add(workers.submit(() -> worker.searchOwnTree(root)));
+			} else {
+				searches.add(workers.submit(() -> worker.search(mcTree, transpositionTable)));
+			}
+		}
+
 		while (!shouldStopComputation()) {
 
 			if (looped++ % printThreshold == 0) {
@@ -124,12 +238,7 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 				log.debf_("MCTS with %d simulations at confidence %.1f%%", mcTree.getNode().getPlays(),
 						Util.percentage(mcTree.getNode().getWins(), mcTree.getNode().getPlays()));
 			}
-			Tree<RiskGameNode<RiskAction>> tree = mcTree;
-
-			tree = mcSelection(tree);
-			mcExpansion(tree);
-			boolean won = mcSimulation(tree, 128, 2);
-			mcBackPropagation(tree, won);
+			mcIteration(mcTree, random, transpositionTable);
 
 			if (printThreshold < MAX_PRINT_THRESHOLD) {
 				printThreshold = Math.max(1, Math.min(MAX_PRINT_THRESHOLD,
@@ -150,22 +259,218 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 						TimeUnit.NANOSECONDS,
 						TimeUnit.NANOSECONDS));
 
-		if (mcTree.isLeaf()) {
+		List<Tree<RiskGameNode<RiskAction>>> roots = new ArrayList<>();
+		roots.add(mcTree);
+		roots.addAll(awaitRoots(searches));
+		searchedRoots = roots;
+		finishMetrics(elapsedTime, roots.stream().mapToLong(Tree::size).sum());
+		Collection<RiskGameNode<RiskAction>> candidates = mergeRootChildren(roots);
+
+		if (candidates.isEmpty()) {
 			log._debug(". Could not find a move, choosing the next best greedy option.");
 			return Collections.max(game.getPossibleActions(),
 					(o1, o2) -> gameComparator.compare(game.doAction(o1), game.doAction(o2)));
 		}
 
-		return Collections.max(mcTree.getChildren(), gameMcTreeMoveComparator).getNode().getGame()
-				.getPreviousAction();
+		return Collections.max(candidates, gameMcNodeMoveComparator).getAction();
+	}
+
+	@Override
+	public void tearDown() {
+		super.tearDown();
+		if (workers != null) {
+			workers.shutdownNow();
+			workers = null;
+		}
+	}
+
+	/**
+	 * @return the metrics of the last call of computeNextAction
+	 */
+	public SearchMetrics getSearchMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the roots of the trees whose children were merged by the last call of
+	 * computeNextAction, the tree of the agent first
+	 */
+	List<Tree<RiskGameNode<RiskAction>>> getSearchedRoots() {
+		return searchedRoots;
+	}
+
+	/**
+	 * @param metricsLog file the metrics of every decision are appended to as JSON lines, null to
+	 *                   write none. Defaults to the value of METRICS_LOG_PROPERTY.
+	 */
+	public void setMetricsLog(Path metricsLog) {
+		this.metricsLog = metricsLog;
+	}
+
+	/**
+	 * @param rolloutPolicy chooses the actions of the playouts, a HeavyRolloutPolicy by default
+	 */
+	public void setRolloutPolicy(RolloutPolicy rolloutPolicy) {
+		this.rolloutPolicy = Objects.requireNonNull(rolloutPolicy);
+	}
+
+	private void finishMetrics(long elapsedTime, long treeSize) {
+		metrics.finish(elapsedTime, treeSize);
+		if (metricsLog == null) {
+			return;
+		}
+		try {
+			Files.write(metricsLog, (metrics.toJson() + "\n").getBytes(StandardCharsets.UTF_8),
+					StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			log.warn("Could not write search metrics to " + metricsLog + ": " + e.getMessage());
+		}
+	}
+
+	private List<Tree<RiskGameNode<RiskAction>>> awaitRoots(
+			List<Future<Tree<RiskGameNode<RiskAction>>>> searches) {
+		List<Tree<RiskGameNode<RiskAction>>> roots = new ArrayList<>(searches.size());
+		for (Future<Tree<RiskGameNode<RiskAction>>> search : searches) {
+			try {
+				Tree<RiskGameNode<RiskAction>> root = search.get();
+				if (root != mcTree) {
+					roots.add(root);
+				}
+			} catch (ExecutionException e) {
+				log.warn("Root worker failed: " + e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				searches.forEach(s -> s.cancel(true));
+				break;
+			}
+		}
+		return roots;
+	}
+
+	/**
+	 * Adds up the statistics of the root children of all searched trees by their action. The
+	 * merged nodes are lazy, so only the games of tied candidates are computed.
+	 * @param roots
+	 * @return one node per action with the summed wins and plays
+	 */
+	Collection<RiskGameNode<RiskAction>> mergeRootChildren(
+			List<Tree<RiskGameNode<RiskAction>>> roots) {
+		Map<RiskAction, RiskGameNode<RiskAction>> merged = new HashMap<>();
+		for (Tree<RiskGameNode<RiskAction>> root : roots) {
+			for (Tree<RiskGameNode<RiskAction>> child : root.getChildren()) {
+				RiskGameNode<RiskAction> node = child.getNode();
+				RiskGameNode<RiskAction> sum = merged.computeIfAbsent(node.getAction(),
+						action -> new RiskGameNode<>(root.getNode(), action));
+				sum.setWins(sum.getWins() + node.getWins());
+				sum.setPlays(sum.getPlays() + node.getPlays());
+			}
+		}
+		return merged.values();
+	}
+
+	private void mcIteration(Tree<RiskGameNode<RiskAction>> root, Random random,
+	                         TranspositionTable transpositionTable) {
+		long startTime = System.nanoTime();
+		Tree<RiskGameNode<RiskAction>> tree = mcSelection(root, random, transpositionTable);
+		long selectedTime = System.nanoTime();
+		mcExpansion(tree, transpositionTable);
+		long expandedTime = System.nanoTime();
+		int wins;
+		if (playoutsPerLeaf == 1) {
+			wins = mcSimulation(tree, 128, 2, random) ? 1 : 0;
+		} else {
+			wins = mcSimulations(tree, random);
+		}
+		long simulatedTime = System.nanoTime();
+		mcBackPropagation(tree, wins, playoutsPerLeaf);
+
+		int depth = 0;
+		for (Tree<RiskGameNode<RiskAction>> node = tree; node != root; node = node.getParent()) {
+			depth++;
+		}
+		metrics.addSelection(depth);
+		metrics.addNanos(SearchMetrics.Phase.SELECTION, selectedTime - startTime);
+		metrics.addNanos(SearchMetrics.Phase.EXPANSION, expandedTime - selectedTime);
+		metrics.addNanos(SearchMetrics.Phase.SIMULATION, simulatedTime - expandedTime);
+		metrics.addNanos(SearchMetrics.Phase.BACKPROPAGATION, System.nanoTime() - simulatedTime);
+	}
+
+	/**
+	 * Runs playoutsPerLeaf playouts from the same node, all but one of them on the common
+	 * ForkJoinPool. Every playout draws from a random number generator of its own.
+	 * @param tree
+	 * @param random
+	 * @return the number of won playouts
+	 */
+	private int mcSimulations(Tree<RiskGameNode<RiskAction>> tree, Random random) {
+		List<ForkJoinTask<Boolean>> playouts = new ArrayList<>(playoutsPerLeaf - 1);
+		for (int i = 1; i < playoutsPerLeaf; i++) {
+			Random playoutRandom = new Random(random.nextLong());
+			playouts.add(ForkJoinPool.commonPool()
+					.submit(() -> mcSimulation(tree, 128, 2, playoutRandom)));
+		}
+		int wins = mcSimulation(tree, 128, 2, random) ? 1 : 0;
+		for (ForkJoinTask<Boolean> playout : playouts) {
+			if (playout.join()) {
+				wins++;
+			}
+		}
+		return wins;
+	}
+
+	/**
+	 * How the threads of the agent share the search.
+	 */
+	public enum Parallelism {
+		/**
+		 * Every thread searches a tree of its own, the root children of all trees are merged.
+		 */
+		ROOT,
+		/**
+		 * All threads search the tree of the agent, virtual losses keep them on different paths.
+		 */
+		TREE
+	}
+
+	/**
+	 * Searches next to the calling thread with a random number generator of its own. For root
+	 * parallelism it also keeps a tree and transposition table of its own.
+	 */
+	private final class SearchWorker {
+
+		private final Tree<RiskGameNode<RiskAction>> tree = new DoubleLinkedTree<>();
+		private final Random random;
+		private final TranspositionTable transpositionTable;
+
+		SearchWorker(Random random, TranspositionTable transpositionTable) {
+			this.random = random;
+			this.transpositionTable = transpositionTable;
+			tree.setNode(new RiskGameNode<>());
+		}
+
+		Tree<RiskGameNode<RiskAction>> searchOwnTree(Risk game) {
+			Util.findRoot(tree, game);
+			tree.getNode().pin();
+			return search(tree, transpositionTable);
+		}
+
+		Tree<RiskGameNode<RiskAction>> search(Tree<RiskGameNode<RiskAction>> tree,
+		                                      TranspositionTable transpositionTable) {
+			while (!shouldStopComputation()) {
+				mcIteration(tree, random, transpositionTable);
+			}
+			return tree;
+		}
 	}
 
 	protected boolean sortPromisingCandidates(Tree<RiskGameNode<RiskAction>> tree,
 	                                          Comparator<RiskGameNode<RiskAction>> comparator) {
 		boolean isDetermined = true;
 		while (!tree.isLeaf() && isDetermined) {
-			isDetermined = tree.getChildren().stream()
-					.allMatch(c -> c.getNode().getGame().getCurrentPlayer() >= 0);
+			// children without a game were not visited, or not for long, computing their games only
+			// to check them would cost more than the check saves
+			isDetermined = tree.getChildren().stream().map(Tree::getNode)
+					.allMatch(c -> !c.hasGame() || c.getGame().getCurrentPlayer() >= 0);
 			if (tree.getNode().getGame().getCurrentPlayer() == playerId) {
 				tree.sort(comparator);
 			} else {
@@ -178,27 +483,86 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 
 
 	protected Tree<RiskGameNode<RiskAction>> mcSelection(Tree<RiskGameNode<RiskAction>> tree) {
+		return mcSelection(tree, random, transpositionTable);
+	}
+
+	/**
+	 * Counts a play on every node of the selected path as a virtual loss, so that threads searching
+	 * the same tree spread out. mcBackPropagation turns these plays into the actual result.
+	 * Chance nodes are never expanded up front: every visit draws an outcome from the exact
+	 * distribution of the game and enters the child of the outcome, which is added the first time
+	 * the outcome is drawn. Nodes with more candidates than children are widened before their
+	 * children are compared.
+	 * @param tree
+	 * @param random
+	 * @param transpositionTable
+	 * @return the selected node
+	 */
+	private Tree<RiskGameNode<RiskAction>> mcSelection(Tree<RiskGameNode<RiskAction>> tree,
+	                                                  Random random,
+	                                                  TranspositionTable transpositionTable) {
+		tree.getNode().incPlays();
 		int depth = 0;
-		while (!tree.isLeaf() && (depth++ % 31 != 0 || !shouldStopComputation())) {
-			List<Tree<RiskGameNode<RiskAction>>> children = new ArrayList<>(tree.getChildren());
-			if (tree.getNode().getGame().getCurrentPlayer() < 0) {
-				RiskAction action = tree.getNode().getGame().determineNextAction();
-				for (Tree<RiskGameNode<RiskAction>> child : children) {
-					if (child.getNode().getGame().getPreviousAction().equals(action)) {
-						tree = child;
-						break;
+		while (true) {
+			List<Tree<RiskGameNode<RiskAction>>> children = null;
+			Tree<RiskGameNode<RiskAction>> next = null;
+			// children are added and the lazy state of a game is built under the lock of its node
+			synchronized (tree) {
+				Risk game = (Risk) tree.getNode().getGame();
+				boolean isChance = game.getCurrentPlayer() < 0 && !game.isGameOver();
+				if ((!isChance && tree.isLeaf()) || (depth++ % 31 == 0 && shouldStopComputation())) {
+					return tree;
+				}
+				if (isChance) {
+					RiskAction outcome = game.determineNextAction(random);
+					if (outcome == null) {
+						return tree;
 					}
+					next = outcomeChild(tree, outcome, transpositionTable);
+				} else {
+					widen(tree, transpositionTable);
+					children = new ArrayList<>(tree.getChildren());
 				}
-			} else {
-				tree = Collections.max(children, gameMcTreeSelectionComparator);
 			}
+			if (next == null) {
+				next = Collections.max(children, gameMcTreeSelectionComparator);
+			}
+			tree = next;
+			tree.getNode().incPlays();
 		}
-		return tree;
+	}
+
+	private Tree<RiskGameNode<RiskAction>> outcomeChild(Tree<RiskGameNode<RiskAction>> tree,
+	                                                   RiskAction outcome,
+	                                                   TranspositionTable transpositionTable) {
+		RiskGameNode<RiskAction> node = tree.getNode();
+		Tree<RiskGameNode<RiskAction>> child = node.getOutcome(outcome);
+		if (child == null) {
+			node.pin();
+			child = new DoubleLinkedTree<>(mcNode(node, outcome, transpositionTable));
+			tree.add(child);
+			node.putOutcome(outcome, child);
+		}
+		return child;
 	}
 
 	protected void mcExpansion(Tree<RiskGameNode<RiskAction>> tree) {
+		mcExpansion(tree, transpositionTable);
+	}
+
+	private void mcExpansion(Tree<RiskGameNode<RiskAction>> tree,
+	                         TranspositionTable transpositionTable) {
+		synchronized (tree) {
+			expand(tree, transpositionTable);
+		}
+	}
+
+	private void expand(Tree<RiskGameNode<RiskAction>> tree, TranspositionTable transpositionTable) {
 		RiskGameNode<RiskAction> currNode = tree.getNode();
-		if (tree.isLeaf()) {
+		// the outcomes of chance nodes are added one by one during the selection
+		if (tree.isLeaf() && currNode.getGame().getCurrentPlayer() >= 0) {
+			// the children have to stay children of this very game
+			currNode.pin();
 			Risk game = (Risk) currNode.getGame();
 
 			RiskBoard board = game.getBoard();
@@ -211,9 +575,9 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 			} else if (game.getBoard().isAttackPhase()) {
 				possibleActions = useMaximumTroops(game, possibleActions);
 			} else if (game.getBoard().isFortifyPhase() || game.getBoard().isReinforcementPhase()) {
-				possibleActions = removeSecuredTerritories(game, possibleActions);
-				possibleActions = removeInsufficientTroops(game, possibleActions);
-				possibleActions = stackTroops(game, possibleActions);
+				currNode.setCandidates(byPrior(game, possibleActions));
+				widen(tree, transpositionTable);
+				return;
 			}
 
 
@@ -221,80 +585,103 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 
 			for (RiskAction possibleAction : possibleActions) {
 				//todo wie lange halte ich kontinente hinzufügen
-				tree.add(new RiskGameNode<>(game, possibleAction));
+				tree.add(mcNode(currNode, possibleAction, transpositionTable));
 			}
+			metrics.addExpansion(possibleActions.size());
 		}
 	}
 
 	/**
-	 * Try stacking as many troops on one territory as possible
-	 * @param game
-	 * @param possibleActions
-	 * @return
+	 * Progressive widening: adds the next candidates of the node as children until it has as many
+	 * as its plays allow.
+	 * @param tree
+	 * @param transpositionTable
 	 */
-	private Set<RiskAction> stackTroops(Risk game, Set<RiskAction> possibleActions) {
-		int maxStack = 0;
-		int maxDest = 0;
-		for (RiskAction action : possibleActions) {
-			int dest = action.fortifiedId();
-			int troops = game.getBoard().getTerritoryTroops(dest);
-			if (maxStack < troops + action.troops()) {
-
-				maxStack = troops + action.troops();
-				maxDest = dest;
-			}
+	private void widen(Tree<RiskGameNode<RiskAction>> tree, TranspositionTable transpositionTable) {
+		RiskGameNode<RiskAction> node = tree.getNode();
+		int width = widening(node.getPlays());
+		int added = 0;
+		while (node.hasCandidates() && tree.getChildren().size() < width) {
+			tree.add(mcNode(node, node.nextCandidate(), transpositionTable));
+			added++;
 		}
+		if (added > 0) {
+			metrics.addExpansion(added);
+		}
+	}
 
-		int finalMaxDest = maxDest;
-		return possibleActions.stream().filter(riskAction -> riskAction.fortifiedId() == finalMaxDest).collect(Collectors.toSet());
+	/**
+	 * @param plays
+	 * @return the number of children a node with the given plays may have
+	 */
+	static int widening(int plays) {
+		return (int) Math.ceil(WIDENING_CONSTANT * Math.pow(Math.max(1, plays), WIDENING_EXPONENT));
 	}
 
 	/**
-	 *
+	 * Sorts the reinforcements or fortifications by their prior, best first.
 	 * @param game
 	 * @param possibleActions
-	 * @return
+	 * @return the sorted actions
 	 */
-	private Set<RiskAction> removeInsufficientTroops(Risk game, Set<RiskAction> possibleActions) {
-		Set<RiskAction> sufficientTroops;
-		if (game.getBoard().isReinforcementPhase()) {
-			int max = possibleActions.stream().map(RiskAction::troops).max(Comparator.naturalOrder()).get();
-			sufficientTroops = possibleActions.stream().filter(riskAction -> riskAction.troops() == max).collect(Collectors.toSet());
+	private List<RiskAction> byPrior(Risk game, Set<RiskAction> possibleActions) {
+		RiskBoard board = game.peekBoard();
+		Map<RiskAction, Double> priors = new HashMap<>();
+		for (RiskAction action : possibleActions) {
+			priors.put(action, prior(board, action));
+		}
+		List<RiskAction> candidates = new ArrayList<>(possibleActions);
+		candidates.sort(Comparator.<RiskAction>comparingDouble(priors::get).reversed());
+		return candidates;
+	}
 
+	/**
+	 * Cheap estimate of a reinforcement or fortification. Trading in cards comes first, then troops
+	 * moved onto a territory bordering an enemy, the larger the resulting stack the better, moved
+	 * off the front a little worse. Ending the phase comes next and moving troops away from the
+	 * front last.
+	 * @param board
+	 * @param action
+	 * @return the prior, higher is better
+	 */
+	private static double prior(RiskBoard board, RiskAction action) {
+		if (action.isCardIds()) {
+			return Double.POSITIVE_INFINITY;
+		} else if (action.isEndPhase()) {
+			return 0D;
+		}
+		int destination;
+		boolean offTheFront = false;
+		if (board.isReinforcementPhase()) {
+			destination = action.reinforcedId();
 		} else {
-			sufficientTroops = possibleActions.stream().
-					filter(riskAction -> riskAction.defendingId() > 0).
-					filter(riskAction -> riskAction.attackingId() > 0).
-					filter(action -> game.getBoard().neighboringEnemyTerritories(action.defendingId()).isEmpty()).
-					filter(riskAction -> game.getBoard().neighboringEnemyTerritories(riskAction.attackingId()).isEmpty())
-					.collect(Collectors.toSet());
-		}
-		if (sufficientTroops == null) {
-			return possibleActions;
+			destination = action.fortifiedId();
+			offTheFront = board.getNrOfNeighboringEnemyTerritories(action.fortifyingId()) > 0;
 		}
-		if (sufficientTroops.isEmpty()) {
-			return possibleActions;
+		if (board.getNrOfNeighboringEnemyTerritories(destination) == 0) {
+			return -action.troops();
 		}
-		return sufficientTroops;
+		return board.getTerritoryTroops(destination) + (offTheFront ? 0 : action.troops());
 	}
 
 	/**
-	 * Removes all actions which wants to fortify a territory which has no enemy territories near it
-	 * @param game
-	 * @param possibleActions
-	 * @return
+	 * Creates a lazy child, whose game is computed on its first visit. Transposed positions are only
+	 * found by the key of the game, so with a transposition table the game is computed right away.
+	 * @param parent
+	 * @param action
+	 * @param transpositionTable
+	 * @return the child
 	 */
-	private Set<RiskAction> removeSecuredTerritories(Risk game, Set<RiskAction> possibleActions) {
-		Set<RiskAction> unsecureActions = possibleActions.stream().
-				filter(riskAction -> riskAction.fortifiedId() > 0).
-				filter(action ->
-						!game.getBoard().neighboringEnemyTerritories(action.fortifiedId()).isEmpty()).
-				collect(Collectors.toSet());
-		if (unsecureActions.isEmpty()) {
-			return possibleActions;
+	private RiskGameNode<RiskAction> mcNode(RiskGameNode<RiskAction> parent, RiskAction action,
+	                                        TranspositionTable transpositionTable) {
+		if (transpositionTable == null) {
+			return new RiskGameNode<>(parent, action);
+		}
+		Risk next = (Risk) parent.getGame().doAction(action);
+		synchronized (transpositionTable) {
+			return new RiskGameNode<>(parent, action, next,
+					transpositionTable.get(next.getZobristKey()));
 		}
-		return unsecureActions;
-
 	}
 
 	/**
@@ -374,60 +761,75 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 		return africaActions;
 	}
 
-	protected boolean mcSimulation(Tree<RiskGameNode<RiskAction>> tree, int simulationsAtLeast, int proportion) {
+	protected boolean mcSimulation(Tree<RiskGameNode<RiskAction>> tree, int simulationsAtLeast,
+	                               int proportion, Random random) {
 		int simulationsDone = tree.getNode().getPlays();
 		if (simulationsDone < simulationsAtLeast && shouldStopComputation(proportion)) {
 			int simulationsLeft = simulationsAtLeast - simulationsDone;
-			return mcSimulation(tree, nanosLeft() / simulationsLeft);
+			return mcSimulation(tree, nanosLeft() / simulationsLeft, random);
 		} else if (simulationsDone == 0) {
-			return mcSimulation(tree, TIMEOUT / 2L - nanosElapsed());
+			return mcSimulation(tree, TIMEOUT / 2L - nanosElapsed(), random);
 		}
 
-		return mcSimulation(tree);
+		return mcSimulation(tree, random);
 	}
 
-	protected boolean mcSimulation(Tree<RiskGameNode<RiskAction>> tree) {
-		Risk game = (Risk) tree.getNode().getGame();
+	protected boolean mcSimulation(Tree<RiskGameNode<RiskAction>> tree, Random random) {
+		Risk game = copyGame(tree);
+		int actions = game.getNumberOfActions();
 
 		int depth = 0;
 		while (!game.isGameOver() && (depth++ % 31 != 0 || !shouldStopComputation())) {
 
 			if (game.getCurrentPlayer() < 0) {
-				game = (Risk) game.doAction();
+				game.apply(game.determineNextAction(random));
 			} else {
-				RiskAction action = getNewAction(game);
-				game = (Risk) game.doAction(action);
+				rolloutPolicy.apply(game, random);
 			}
 
 		}
 
-		return mcHasWon(game);
+		metrics.addSimulation(game.getNumberOfActions() - actions);
+		return mcHasWon(game, random);
 	}
 
-	private RiskAction getNewAction(Risk game) {
-		return Util.selectRandom(game.getPossibleActions(), random);
+	/**
+	 * @param tree
+	 * @return a copy of the game of the node to play out, without undo as playouts never take their
+	 * actions back
+	 */
+	private static Risk copyGame(Tree<RiskGameNode<RiskAction>> tree) {
+		Risk game;
+		synchronized (tree) {
+			game = new Risk((Risk) tree.getNode().getGame());
+		}
+		game.setUndoable(false);
+		return game;
 	}
 
-	protected boolean mcSimulation(Tree<RiskGameNode<RiskAction>> tree, long timeout) {
+	protected boolean mcSimulation(Tree<RiskGameNode<RiskAction>> tree, long timeout,
+	                               Random random) {
 		long startTime = System.nanoTime();
-		Risk game = (Risk) tree.getNode().getGame();
+		Risk game = copyGame(tree);
+		int actions = game.getNumberOfActions();
 
 		int depth = 0;
 		while (!game.isGameOver() && (System.nanoTime() - startTime <= timeout) && (depth++ % 31 != 0
 				|| !shouldStopComputation())) {
 
 			if (game.getCurrentPlayer() < 0) {
-				game = (Risk) game.doAction();
+				game.apply(game.determineNextAction(random));
 			} else {
-				game = (Risk) game.doAction(Util.selectRandom(game.getPossibleActions(), random));
+				rolloutPolicy.apply(game, random);
 			}
 
 		}
 
-		return mcHasWon(game);
+		metrics.addSimulation(game.getNumberOfActions() - actions);
+		return mcHasWon(game, random);
 	}
 
-	protected boolean mcHasWon(Risk game) {
+	protected boolean mcHasWon(Risk game, Random random) {
 		double[] evaluation = game.getGameUtilityValue();
 		double score = Util.scoreOutOfUtility(evaluation, playerId);
 		if (!game.isGameOver() && score > 0) {
@@ -445,13 +847,16 @@ public class AustraliaFirstAgent extends AbstractGameAgent<Risk, RiskAction> imp
 
 
 	protected void mcBackPropagation(Tree<RiskGameNode<RiskAction>> tree, boolean win) {
-		int depth = 0;
-		while (!tree.isRoot() && (depth++ % 31 != 0 || !shouldStopComputation())) {
+		mcBackPropagation(tree, win ? 1 : 0, 1);
+	}
+
+	protected void mcBackPropagation(Tree<RiskGameNode<RiskAction>> tree, int wins, int playouts) {
+		// the selected node itself is only counted once it has been expanded
+		tree.getNode().decPlays();
+		while (!tree.isRoot()) {
 			tree = tree.getParent();
-			tree.getNode().incPlays();
-			if (win) {
-				tree.getNode().incWins();
-			}
+			// one play per node was counted by the selection already
+			tree.getNode().add(wins, playouts - 1);
 		}
 	}
 
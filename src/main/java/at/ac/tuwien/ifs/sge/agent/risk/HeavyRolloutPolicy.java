@@ -0,0 +1,116 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.BattleTable;
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
+import java.util.Random;
+
+/**
+ * Plays greedy instead of random actions, so that playouts reach the end of the game in far fewer
+ * plies. It trades in cards whenever it can, places all reinforcements on a territory bordering an
+ * enemy, attacks with the maximum number of troops where the odds are good and ends the attack
+ * otherwise, occupies with as many troops as possible and does not fortify. The initial selection
+ * of territories stays random. Ties are broken at random. Played through apply, attacks are fought
+ * to the end in one step.
+ */
+public final class HeavyRolloutPolicy implements RolloutPolicy {
+
+  // attacks need at least this probability to win the battle
+  private static final double GOOD_ODDS = 0.6D;
+
+  // encoded possible actions, reused by all playouts of a thread
+  private static final ThreadLocal<long[]> ACTIONS = ThreadLocal.withInitial(() -> new long[256]);
+
+  @Override
+  public RiskAction nextAction(Risk game, Random random) {
+    if (game.getCurrentPlayer() < 0) {
+      return game.determineNextAction(random);
+    }
+    RiskBoard board = game.peekBoard();
+    int player = game.getCurrentPlayer();
+    if (board.getNrOfTerritoriesOccupiedByPlayer(-1) > 0 || board.hasToTradeInCards(player)) {
+      return game.sampleRandomAction(random);
+    }
+    if (board.isFortifyPhase()) {
+      return RiskAction.endPhase();
+    }
+
+    long[] actions = ACTIONS.get();
+    int size = game.getPossibleActions(actions);
+    if (size > actions.length) {
+      actions = new long[Integer.highestOneBit(size) << 1];
+      ACTIONS.set(actions);
+      game.getPossibleActions(actions);
+    }
+    if (size == 0) {
+      throw new IllegalStateException(
+          "No possible action in " + game + " after " + game.getPreviousAction());
+    }
+
+    RiskAction chosen = null;
+    double best = Double.NEGATIVE_INFINITY;
+    int ties = 0;
+    for (int i = 0; i < size; i++) {
+      RiskAction action = RiskAction.decode(actions[i]);
+      double value;
+      if (action.isCardIds()) {
+        value = Double.POSITIVE_INFINITY;
+      } else if (board.isAttackPhase()) {
+        value = attackValue(game.getBattleTable(), board, action);
+      } else if (board.isReinforcementPhase()) {
+        // every border beats every other territory, more troops beat fewer
+        value = action.troops()
+            + (board.getNrOfNeighboringEnemyTerritories(action.reinforcedId()) > 0 ? size : 0);
+      } else {
+        value = action.troops();
+      }
+      if (value > best) {
+        chosen = action;
+        best = value;
+        ties = 1;
+      } else if (value == best && random.nextInt(++ties) == 0) {
+        chosen = action;
+      }
+    }
+    return chosen;
+  }
+
+  /**
+   * Fights the chosen attacks to the end in one step instead of one round per action.
+   */
+  @Override
+  public void apply(Risk game, Random random) {
+    RiskAction action = nextAction(game, random);
+    if (game.getCurrentPlayer() >= 0 && game.peekBoard().isAttackPhase()
+        && !action.isEndPhase() && !action.isCardIds()) {
+      game.applyBattle(action.attackingId(), action.defendingId(), random);
+    } else {
+      game.apply(action);
+    }
+  }
+
+  /**
+   * Only attacks with the maximum number of troops and good odds to win the battle are worth more
+   * than ending the attack, the better the odds the more. Battles beyond the cap of the table are
+   * won by the larger army.
+   */
+  private static double attackValue(BattleTable table, RiskBoard board, RiskAction action) {
+    if (action.isEndPhase()) {
+      return 0D;
+    }
+    int attackingId = action.attackingId();
+    if (action.troops() < board.getMaxAttackingTroops(attackingId)) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    int attackers = board.getMobileTroops(attackingId);
+    int defenders = board.getTerritoryTroops(action.defendingId());
+    double odds;
+    if (attackers <= table.getCap() && defenders <= table.getCap()) {
+      odds = table.getWinProbability(attackers, defenders);
+    } else {
+      odds = attackers >= defenders ? 1D : 0D;
+    }
+    return odds >= GOOD_ODDS ? odds : Double.NEGATIVE_INFINITY;
+  }
+}
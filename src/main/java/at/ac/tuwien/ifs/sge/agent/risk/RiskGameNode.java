@@ -2,22 +2,31 @@ package at.ac.tuwien.ifs.sge.agent.risk;
 
 import at.ac.tuwien.ifs.sge.game.Game;
 import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
-import at.ac.tuwien.ifs.sge.game.risk.configuration.RiskContinentConfiguration;
-import at.ac.tuwien.ifs.sge.game.risk.configuration.RiskMissionConfiguration;
 import at.ac.tuwien.ifs.sge.util.node.GameNode;
+import at.ac.tuwien.ifs.sge.util.tree.Tree;
 
+import java.lang.ref.SoftReference;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RiskGameNode<A> implements GameNode<A> {
 
-  private Risk game;
-  private int wins;
-  private int plays;
+  // read without the lock by risk(), so a game pinned by another thread is seen fully built
+  private volatile Risk game;
+  private final Statistics statistics;
 
-  private Map<RiskContinentConfiguration, Integer> continents;
+  // a lazy node computes its game by applying its action to the game of its parent
+  private RiskGameNode<A> parent;
+  private final A action;
+  private SoftReference<Risk> cachedGame;
+
+  // children of a chance node by outcome, guarded like the children by the lock of the tree
+  private Map<A, Tree<RiskGameNode<A>>> outcomes;
+  // actions that were not expanded yet, best first, guarded by the lock of the tree as well
+  private List<A> candidates;
+  private int nextCandidate;
 
   public RiskGameNode() {
     this(null);
@@ -32,48 +41,181 @@ public class RiskGameNode<A> implements GameNode<A> {
   }
 
   public RiskGameNode(Game<A, ?> game, int wins, int plays) {
+    this(game, new Statistics(wins, plays));
+  }
+
+  RiskGameNode(Game<A, ?> game, Statistics statistics) {
     this.game = (Risk) game;
-    this.wins = wins;
-    this.plays = plays;
+    this.statistics = statistics;
+    parent = null;
+    action = null;
+  }
 
-    continents = new HashMap<>();
-    for (RiskContinentConfiguration continent:
-         RiskContinentConfiguration.allContinents) {
-      continents.put(continent, 0);
-    }
+  /**
+   * Creates a lazy node, which computes its game from the game of the parent on its first visit.
+   *
+   * @param parent the node the action is applied to
+   * @param action the action leading to this node
+   */
+  public RiskGameNode(RiskGameNode<A> parent, A action) {
+    this(parent, action, null, new Statistics());
   }
 
+  /**
+   * Creates a lazy node whose game is already known, it is cached like a computed one.
+   */
+  RiskGameNode(RiskGameNode<A> parent, A action, Game<A, ?> game, Statistics statistics) {
+    this.parent = parent;
+    this.action = action;
+    this.statistics = statistics;
+    if (game != null) {
+      cachedGame = new SoftReference<>((Risk) game);
+    }
+  }
 
   public Game<A, ?> getGame() {
-    return (Game<A, ?>) game;
+    return (Game<A, ?>) risk();
+  }
+
+  /**
+   * Returns the game of this node. A lazy node computes it from the game of its parent the first
+   * time and caches it softly: the games of leaves that are not visited for a while can be
+   * collected when memory runs low and are computed again on their next visit.
+   */
+  private Risk risk() {
+    Risk risk = game;
+    if (risk != null) {
+      return risk;
+    }
+    synchronized (this) {
+      if (parent == null) {
+        return game;
+      }
+      risk = cachedGame == null ? null : cachedGame.get();
+      if (risk == null) {
+        risk = (Risk) parent.getGame().doAction(action);
+        cachedGame = new SoftReference<>(risk);
+      }
+      return risk;
+    }
+  }
+
+  /**
+   * @return whether the game of this node is available without computing it
+   */
+  synchronized boolean hasGame() {
+    return game != null || (cachedGame != null && cachedGame.get() != null);
+  }
+
+  /**
+   * Drops the cached game like the garbage collector does when memory runs low.
+   */
+  synchronized void clearCachedGame() {
+    cachedGame = null;
+  }
+
+  /**
+   * @return the action leading to a lazy node, null for other nodes
+   */
+  public A getAction() {
+    return action;
+  }
+
+  /**
+   * Keeps the game of this node for good and forgets its parent. Computing a game again does not
+   * always lead to the same game, reshuffling the discard pile deals other cards, so a node is
+   * pinned before children are added to it. A lazy node that becomes the root of the search is
+   * pinned as well, it would otherwise keep the whole previous tree reachable.
+   */
+  synchronized void pin() {
+    if (parent != null) {
+      game = risk();
+      parent = null;
+      cachedGame = null;
+    }
   }
 
   public void setGame(Game<A, ?> game) {
     this.game = (Risk) game;
+    outcomes = null;
+    candidates = null;
+  }
+
+  /**
+   * @param outcome the outcome of the chance node of this node
+   * @return the child of the outcome or null if it was not added yet
+   */
+  Tree<RiskGameNode<A>> getOutcome(A outcome) {
+    return outcomes == null ? null : outcomes.get(outcome);
+  }
+
+  void putOutcome(A outcome, Tree<RiskGameNode<A>> child) {
+    if (outcomes == null) {
+      outcomes = new HashMap<>(4);
+    }
+    outcomes.put(outcome, child);
+  }
+
+  /**
+   * @param candidates the actions of this node in the order in which they are to be expanded
+   */
+  void setCandidates(List<A> candidates) {
+    this.candidates = candidates.isEmpty() ? null : candidates;
+    nextCandidate = 0;
+  }
+
+  boolean hasCandidates() {
+    return candidates != null;
+  }
+
+  /**
+   * @return the next action to expand or null if all were expanded
+   */
+  A nextCandidate() {
+    if (candidates == null) {
+      return null;
+    }
+    A candidate = candidates.get(nextCandidate++);
+    if (nextCandidate == candidates.size()) {
+      candidates = null;
+    }
+    return candidate;
+  }
+
+  Statistics getStatistics() {
+    return statistics;
   }
 
   public int getWins() {
-    return wins;
+    return statistics.getWins();
   }
 
   public void setWins(int wins) {
-    this.wins = wins;
+    statistics.setWins(wins);
   }
 
   public void incWins() {
-    wins++;
+    statistics.add(1, 0);
   }
 
   public int getPlays() {
-    return plays;
+    return statistics.getPlays();
   }
 
   public void setPlays(int plays) {
-    this.plays = plays;
+    statistics.setPlays(plays);
   }
 
   public void incPlays() {
-    plays++;
+    statistics.add(0, 1);
+  }
+
+  public void decPlays() {
+    statistics.add(0, -1);
+  }
+
+  public void add(int wins, int plays) {
+    statistics.add(wins, plays);
   }
 
   @Override
@@ -85,13 +227,68 @@ public class RiskGameNode<A> implements GameNode<A> {
       return false;
     }
     RiskGameNode<?> riskGameNode = (RiskGameNode<?>) o;
-    return wins == riskGameNode.wins &&
-            plays == riskGameNode.plays &&
-            game.equals(riskGameNode.game);
+    // nodes created from a parent are only equal to themselves, comparing their games would
+    // compute them
+    if (action != null || riskGameNode.action != null) {
+      return false;
+    }
+    return getWins() == riskGameNode.getWins() &&
+            getPlays() == riskGameNode.getPlays() &&
+            (game == null ? riskGameNode.game == null : riskGameNode.game != null
+                && game.getZobristKey() == riskGameNode.game.getZobristKey());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(game, wins, plays);
+    if (action != null) {
+      return System.identityHashCode(this);
+    }
+    Risk game = this.game;
+    return game == null ? 0 : Long.hashCode(game.getZobristKey());
+  }
+
+  /**
+   * Win and play counts of a node. Nodes of transposed positions share one instance if the search
+   * uses a TranspositionTable. Both counts are packed into one atomic long, so threads searching
+   * the same tree update them without locks and never read a win without its play.
+   */
+  static final class Statistics {
+
+    private static final long WIN = 1L << 32;
+    private static final long PLAYS = WIN - 1;
+
+    private final AtomicLong counts;
+
+    Statistics() {
+      this(0, 0);
+    }
+
+    Statistics(int wins, int plays) {
+      counts = new AtomicLong(pack(wins, plays));
+    }
+
+    private static long pack(int wins, int plays) {
+      return wins * WIN + (plays & PLAYS);
+    }
+
+    int getWins() {
+      return (int) (counts.get() >> 32);
+    }
+
+    int getPlays() {
+      return (int) counts.get();
+    }
+
+    void setWins(int wins) {
+      counts.updateAndGet(c -> pack(wins, (int) c));
+    }
+
+    void setPlays(int plays) {
+      counts.updateAndGet(c -> pack((int) (c >> 32), plays));
+    }
+
+    void add(int wins, int plays) {
+      counts.updateAndGet(c -> pack((int) (c >> 32) + wins, (int) c + plays));
+    }
   }
 }
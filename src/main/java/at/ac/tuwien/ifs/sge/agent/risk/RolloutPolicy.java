@@ -0,0 +1,37 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import java.util.Random;
+
+/**
+ * Chooses the actions of the players in the playouts of the AustraliaFirstAgent. Playouts run on
+ * several threads at once, so implementations must not keep state between calls which is not
+ * confined to a thread.
+ */
+@FunctionalInterface
+public interface RolloutPolicy {
+
+  /**
+   * Plays uniformly random actions.
+   */
+  RolloutPolicy RANDOM = (game, random) -> game.sampleRandomAction(random);
+
+  /**
+   * @param game   the game of the playout, a player is to move. It must not be changed.
+   * @param random the source of randomness of the playout
+   * @return one of the possible actions of the game
+   */
+  RiskAction nextAction(Risk game, Random random);
+
+  /**
+   * Plays the next action of a player in the game. Policies may play several actions at once,
+   * e.g. a whole battle with Risk.applyBattle.
+   *
+   * @param game   the game of the playout, a player is to move
+   * @param random the source of randomness of the playout
+   */
+  default void apply(Risk game, Random random) {
+    game.apply(nextAction(game, random));
+  }
+}
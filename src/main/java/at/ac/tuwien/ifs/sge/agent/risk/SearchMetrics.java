@@ -0,0 +1,241 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of one decision of the AustraliaFirstAgent. All threads searching for the decision
+ * update them, so they are only final once computeNextAction returned. Times of the phases are
+ * summed over all searching threads and may therefore exceed the elapsed time.
+ */
+public final class SearchMetrics {
+
+  /**
+   * Phases of a Monte Carlo tree search iteration.
+   */
+  public enum Phase {
+    SELECTION, EXPANSION, SIMULATION, BACKPROPAGATION
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+
+  private final LongAdder iterations = new LongAdder();
+  private final LongAdder selectionDepth = new LongAdder();
+  private final LongAccumulator maxSelectionDepth = new LongAccumulator(Math::max, 0);
+  private final LongAdder expansions = new LongAdder();
+  private final LongAdder expandedNodes = new LongAdder();
+  private final LongAccumulator maxExpansionWidth = new LongAccumulator(Math::max, 0);
+  private final LongAdder simulations = new LongAdder();
+  private final LongAdder rolloutPlies = new LongAdder();
+  // bucket 0 counts rollouts without plies, bucket i > 0 those of 2^(i-1) to 2^i - 1 plies
+  private final AtomicLongArray rolloutLengths = new AtomicLongArray(Integer.SIZE);
+  private final LongAdder[] phaseNanos = new LongAdder[PHASES.length];
+  private final long gcCountAtStart;
+  private final long gcMillisAtStart;
+  private volatile long reusedTreeSize;
+  private volatile long treeSize;
+  private volatile long gcCount;
+  private volatile long gcMillis;
+  private volatile long elapsedNanos;
+
+  public SearchMetrics() {
+    for (int i = 0; i < phaseNanos.length; i++) {
+      phaseNanos[i] = new LongAdder();
+    }
+    gcCountAtStart = gcCount();
+    gcMillisAtStart = gcMillis();
+  }
+
+  void addSelection(int depth) {
+    iterations.increment();
+    selectionDepth.add(depth);
+    maxSelectionDepth.accumulate(depth);
+  }
+
+  void addExpansion(int width) {
+    expansions.increment();
+    expandedNodes.add(width);
+    maxExpansionWidth.accumulate(width);
+  }
+
+  void addSimulation(int plies) {
+    simulations.increment();
+    rolloutPlies.add(plies);
+    rolloutLengths.incrementAndGet(Integer.SIZE - Integer.numberOfLeadingZeros(plies));
+  }
+
+  void addNanos(Phase phase, long nanos) {
+    phaseNanos[phase.ordinal()].add(nanos);
+  }
+
+  void setReusedTreeSize(long reusedTreeSize) {
+    this.reusedTreeSize = reusedTreeSize;
+  }
+
+  /**
+   * Ends the decision. Garbage collections are counted for the whole JVM from the creation of the
+   * metrics up to here.
+   */
+  void finish(long elapsedNanos, long treeSize) {
+    this.elapsedNanos = elapsedNanos;
+    this.treeSize = treeSize;
+    gcCount = gcCount() - gcCountAtStart;
+    gcMillis = gcMillis() - gcMillisAtStart;
+  }
+
+  public long getIterations() {
+    return iterations.sum();
+  }
+
+  public double getAverageSelectionDepth() {
+    return average(selectionDepth.sum(), getIterations());
+  }
+
+  public long getMaxSelectionDepth() {
+    return maxSelectionDepth.get();
+  }
+
+  public long getExpansions() {
+    return expansions.sum();
+  }
+
+  public long getExpandedNodes() {
+    return expandedNodes.sum();
+  }
+
+  public double getAverageExpansionWidth() {
+    return average(getExpandedNodes(), getExpansions());
+  }
+
+  public long getMaxExpansionWidth() {
+    return maxExpansionWidth.get();
+  }
+
+  public long getSimulations() {
+    return simulations.sum();
+  }
+
+  public long getRolloutPlies() {
+    return rolloutPlies.sum();
+  }
+
+  public double getAverageRolloutDepth() {
+    return average(getRolloutPlies(), getSimulations());
+  }
+
+  /**
+   * @return the number of rollouts per length, index 0 counts rollouts without plies and index
+   *     i > 0 those of 2^(i-1) to 2^i - 1 plies, up to the longest rollout
+   */
+  public long[] getRolloutLengthHistogram() {
+    int length = rolloutLengths.length();
+    while (length > 0 && rolloutLengths.get(length - 1) == 0) {
+      length--;
+    }
+    long[] histogram = new long[length];
+    for (int i = 0; i < length; i++) {
+      histogram[i] = rolloutLengths.get(i);
+    }
+    return histogram;
+  }
+
+  public long getNanos(Phase phase) {
+    return phaseNanos[phase.ordinal()].sum();
+  }
+
+  /**
+   * @return the number of nodes kept from the tree of the previous decision
+   */
+  public long getReusedTreeSize() {
+    return reusedTreeSize;
+  }
+
+  /**
+   * @return the number of nodes of all searched trees at the end of the decision
+   */
+  public long getTreeSize() {
+    return treeSize;
+  }
+
+  public long getGarbageCollections() {
+    return gcCount;
+  }
+
+  public long getGarbageCollectionMillis() {
+    return gcMillis;
+  }
+
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  public double getSimulationsPerSecond() {
+    return perSecond(getSimulations());
+  }
+
+  public double getRolloutPliesPerSecond() {
+    return perSecond(getRolloutPlies());
+  }
+
+  private double perSecond(long count) {
+    return elapsedNanos == 0 ? 0D : count * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+  }
+
+  private static double average(long sum, long count) {
+    return count == 0 ? 0D : (double) sum / count;
+  }
+
+  /**
+   * @return the metrics as a JSON object on a single line
+   */
+  public String toJson() {
+    StringBuilder json = new StringBuilder("{");
+    json.append("\"elapsedNanos\":").append(getElapsedNanos());
+    json.append(",\"iterations\":").append(getIterations());
+    json.append(",\"averageSelectionDepth\":").append(getAverageSelectionDepth());
+    json.append(",\"maxSelectionDepth\":").append(getMaxSelectionDepth());
+    json.append(",\"expansions\":").append(getExpansions());
+    json.append(",\"expandedNodes\":").append(getExpandedNodes());
+    json.append(",\"maxExpansionWidth\":").append(getMaxExpansionWidth());
+    json.append(",\"simulations\":").append(getSimulations());
+    json.append(",\"rolloutPlies\":").append(getRolloutPlies());
+    json.append(",\"rolloutLengthHistogram\":")
+        .append(Arrays.toString(getRolloutLengthHistogram()).replace(" ", ""));
+    json.append(",\"phaseNanos\":{");
+    for (Phase phase : PHASES) {
+      if (phase.ordinal() > 0) {
+        json.append(',');
+      }
+      json.append('"').append(phase.name().toLowerCase(Locale.ROOT)).append("\":")
+          .append(getNanos(phase));
+    }
+    json.append('}');
+    json.append(",\"reusedTreeSize\":").append(getReusedTreeSize());
+    json.append(",\"treeSize\":").append(getTreeSize());
+    json.append(",\"garbageCollections\":").append(getGarbageCollections());
+    json.append(",\"garbageCollectionMillis\":").append(getGarbageCollectionMillis());
+    return json.append('}').toString();
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+}
@@ -0,0 +1,96 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import at.ac.tuwien.ifs.sge.agent.risk.RiskGameNode.Statistics;
+import java.util.Arrays;
+
+/**
+ * Maps the Zobrist keys of positions to the statistics of their nodes, so that nodes of the same
+ * position reached by different move orders share their wins and plays. The table has a fixed
+ * number of entries grouped in buckets of two. Once both entries of a bucket are taken, a new
+ * position replaces one of them as decided by the ReplacementPolicy. Nodes keep the statistics of
+ * a replaced entry, they only stop being shared with nodes created afterwards.
+ */
+public class TranspositionTable {
+
+  public enum ReplacementPolicy {
+    /**
+     * The new entry always replaces the older of the two entries of its bucket.
+     */
+    ALWAYS,
+    /**
+     * The new entry replaces the entry with fewer plays, well explored positions stay shared.
+     */
+    FEWER_PLAYS
+  }
+
+  private final ReplacementPolicy replacementPolicy;
+  private final long[] keys;
+  private final Statistics[] statistics;
+  private final int bucketMask;
+  private int size;
+
+  public TranspositionTable(int capacity) {
+    this(capacity, ReplacementPolicy.FEWER_PLAYS);
+  }
+
+  /**
+   * @param capacity          the maximum number of entries, rounded down to a power of two
+   * @param replacementPolicy decides which entry of a full bucket is replaced
+   */
+  public TranspositionTable(int capacity, ReplacementPolicy replacementPolicy) {
+    if (capacity < 2 || capacity > 1 << 30) {
+      throw new IllegalArgumentException("Capacity has to be between 2 and 2^30");
+    }
+    this.replacementPolicy = replacementPolicy;
+    int entries = Integer.highestOneBit(capacity);
+    keys = new long[entries];
+    statistics = new Statistics[entries];
+    bucketMask = entries / 2 - 1;
+    size = 0;
+  }
+
+  /**
+   * Returns the statistics of the position with the given key, adding new statistics if the
+   * position is not in the table.
+   *
+   * @param key the Zobrist key of the position
+   * @return the statistics shared by all nodes of this position
+   */
+  Statistics get(long key) {
+    int bucket = ((int) (key ^ (key >>> 32)) & bucketMask) << 1;
+    for (int i = bucket; i < bucket + 2; i++) {
+      if (statistics[i] != null && keys[i] == key) {
+        return statistics[i];
+      }
+    }
+
+    int slot = bucket;
+    if (statistics[bucket + 1] == null) {
+      size++;
+    }
+    if (replacementPolicy == ReplacementPolicy.FEWER_PLAYS && statistics[bucket + 1] != null) {
+      slot = statistics[bucket].getPlays() <= statistics[bucket + 1].getPlays()
+          ? bucket : bucket + 1;
+    } else {
+      // the first entry is the newer one, the second one is dropped
+      keys[bucket + 1] = keys[bucket];
+      statistics[bucket + 1] = statistics[bucket];
+    }
+    keys[slot] = key;
+    statistics[slot] = new Statistics();
+    return statistics[slot];
+  }
+
+  public int getSize() {
+    return size;
+  }
+
+  public int getCapacity() {
+    return statistics.length;
+  }
+
+  public void clear() {
+    Arrays.fill(statistics, null);
+    size = 0;
+  }
+}
@@ -0,0 +1,380 @@
+package at.ac.tuwien.ifs.sge.engine.risk;
+
+import at.ac.tuwien.ifs.sge.agent.GameAgent;
+import at.ac.tuwien.ifs.sge.engine.Logger;
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import at.ac.tuwien.ifs.sge.game.risk.configuration.RiskConfiguration;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Plays Risk matches between agents on a bounded pool of threads and ranks the agents by win
+ * rate and Elo. The seating of a match and the draws of its chance nodes are derived from the
+ * seed and its index alone. Whole matches are not reproducible: reshuffling the discard pile is
+ * not seeded, and neither are the agents' own randomness and timing. Every move runs on a thread
+ * of its own, an agent which does not answer in time is disqualified and left behind.
+ */
+@Command(name = "rt", description = "Play Risk matches between agents and rank them.")
+public class RiskTournament implements Callable<Void> {
+
+  private static final double INITIAL_ELO = 1500D;
+  private static final double ELO_FACTOR = 16D;
+  // an agent may overrun its computation time by this factor before it is disqualified
+  private static final long TIMEOUT_FACTOR = 2;
+
+  @Parameters(arity = "2..*", paramLabel = "AGENT",
+      description = "Fully qualified class names of the agents")
+  private List<String> agentClassNames;
+
+  @Option(names = {"-n", "--matches"},
+      description = "Matches per group of agents (default: ${DEFAULT-VALUE})")
+  private int matchesPerGroup = 10;
+
+  @Option(names = {"-p", "--players"},
+      description = "Players per match (default: ${DEFAULT-VALUE})")
+  private int numberOfPlayers = 2;
+
+  @Option(names = {"-c", "--computation-time"},
+      description = "Milliseconds per action (default: ${DEFAULT-VALUE})")
+  private long computationTime = 1000;
+
+  @Option(names = {"-t", "--threads"},
+      description = "Matches played at the same time (default: number of processors)")
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  @Option(names = {"-s", "--seed"},
+      description = "Seed of the first match (default: ${DEFAULT-VALUE})")
+  private long seed = 0;
+
+  @Option(names = {"-m", "--max-actions"},
+      description = "Actions after which a match is a draw (default: ${DEFAULT-VALUE})")
+  private int maxActions = 10000;
+
+  @Option(names = {"-b", "--board"}, paramLabel = "YAML", description = "Board configuration")
+  private Path board;
+
+  @Option(names = {"-l", "--log-level"},
+      description = "Log level of the agents (default: ${DEFAULT-VALUE})")
+  private int logLevel = 1;
+
+  public static void main(String[] args) {
+    System.exit(new CommandLine(new RiskTournament()).execute(args));
+  }
+
+  @Override
+  public Void call() throws Exception {
+    List<MatchResult> results = new ArrayList<>();
+    List<Standing> standings = play(results);
+    System.out.printf("%d matches with %.0f actions on average%n", results.size(),
+        results.stream().mapToInt(r -> r.actions).average().orElse(0D));
+    standings.sort((s1, s2) -> Double.compare(s2.elo, s1.elo));
+    System.out.printf("%-32s %7s %6s %6s %6s %6s %8s %7s%n", "Agent", "Matches", "Wins", "Draws",
+        "Losses", "Disq.", "Win rate", "Elo");
+    for (Standing standing : standings) {
+      System.out.printf("%-32s %7d %6d %6d %6d %6d %7.1f%% %7.0f%n", standing.name,
+          standing.matches, standing.wins, standing.draws, standing.losses,
+          standing.disqualifications, 100D * standing.getWinRate(), standing.elo);
+    }
+    return null;
+  }
+
+  List<Standing> play(List<MatchResult> results) throws Exception {
+    if (numberOfPlayers < 2 || numberOfPlayers > agentClassNames.size()) {
+      throw new IllegalArgumentException(
+          "Players per match must be between 2 and the number of agents, got " + numberOfPlayers);
+    }
+    if (matchesPerGroup < 1 || threads < 1 || computationTime < 1 || maxActions < 1) {
+      throw new IllegalArgumentException("Matches, threads, computation time and actions must be"
+          + " positive");
+    }
+
+    List<Class<?>> agentClasses = new ArrayList<>();
+    for (String agentClassName : agentClassNames) {
+      agentClasses.add(Class.forName(agentClassName).asSubclass(GameAgent.class));
+    }
+    RiskConfiguration configuration = board == null ? RiskConfiguration.RISK_DEFAULT_CONFIG
+        : (RiskConfiguration) RiskConfiguration.getYaml().load(Files.readString(board));
+    Logger log = new Logger(logLevel, "[rt", "", "trace]: ", System.out, "", "debug]: ",
+        System.out, "", "info]: ", System.out, "", "warn]: ", System.err, "", "error]: ",
+        System.err, "");
+
+    List<Match> matches = schedule();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    // agents which do not stop when they are interrupted must not keep the JVM alive
+    ExecutorService moves = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "rt-move");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      List<Future<MatchResult>> futures = new ArrayList<>(matches.size());
+      for (Match match : matches) {
+        futures.add(executor.submit(() -> play(match, agentClasses, configuration, log, moves)));
+      }
+      for (Future<MatchResult> future : futures) {
+        results.add(future.get());
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      executor.shutdownNow();
+      moves.shutdownNow();
+    }
+
+    return rank(results, agentClasses);
+  }
+
+  private List<Match> schedule() {
+    List<Match> matches = new ArrayList<>();
+    int[] group = new int[numberOfPlayers];
+    for (int i = 0; i < numberOfPlayers; i++) {
+      group[i] = i;
+    }
+    do {
+      for (int m = 0; m < matchesPerGroup; m++) {
+        // rotating the seats lets every agent of the group start equally often
+        int[] seats = new int[numberOfPlayers];
+        for (int p = 0; p < numberOfPlayers; p++) {
+          seats[p] = group[(p + m) % numberOfPlayers];
+        }
+        matches.add(new Match(seed + matches.size(), seats));
+      }
+    } while (nextGroup(group, agentClassNames.size()));
+    return matches;
+  }
+
+  private static boolean nextGroup(int[] group, int agents) {
+    int i = group.length - 1;
+    while (i >= 0 && group[i] == agents - group.length + i) {
+      i--;
+    }
+    if (i < 0) {
+      return false;
+    }
+    group[i]++;
+    for (int j = i + 1; j < group.length; j++) {
+      group[j] = group[j - 1] + 1;
+    }
+    return true;
+  }
+
+  private MatchResult play(Match match, List<Class<?>> agentClasses,
+      RiskConfiguration configuration, Logger log, ExecutorService moves)
+      throws ReflectiveOperationException, InterruptedException {
+    Random random = new Random(match.seed);
+    Risk game = new Risk(configuration, numberOfPlayers);
+    List<GameAgent<Risk, RiskAction>> agents = new ArrayList<>(numberOfPlayers);
+    for (int agent : match.seats) {
+      agents.add(newAgent(agentClasses.get(agent), log));
+    }
+
+    int disqualified = -1;
+    int actions = 0;
+    try {
+      for (int p = 0; p < numberOfPlayers; p++) {
+        agents.get(p).setUp(numberOfPlayers, p);
+      }
+      for (; actions < maxActions && !game.isGameOver(); actions++) {
+        int player = game.getCurrentPlayer();
+        RiskAction action;
+        if (player < 0) {
+          action = game.determineNextAction(random);
+        } else {
+          action = computeNextAction(agents.get(player), game, player, moves);
+          if (action == null) {
+            disqualified = player;
+            break;
+          }
+        }
+        game = (Risk) game.doAction(action);
+      }
+    } finally {
+      for (GameAgent<Risk, RiskAction> agent : agents) {
+        agent.tearDown();
+        agent.destroy();
+      }
+    }
+
+    int winner = -1;
+    if (disqualified >= 0) {
+      winner = numberOfPlayers == 2 ? 1 - disqualified : -1;
+    } else if (game.isGameOver()) {
+      double[] utilityValues = game.getGameUtilityValue();
+      for (int p = 0; p < numberOfPlayers; p++) {
+        if (utilityValues[p] == 1D) {
+          winner = p;
+        }
+      }
+    }
+    return new MatchResult(match, winner, disqualified, actions);
+  }
+
+  /**
+   * Asks the agent for its action on a thread of its own and checks it like the engine does. An
+   * agent which does not answer in time is interrupted and not waited for.
+   *
+   * @return the action or null if the agent has to be disqualified
+   */
+  private RiskAction computeNextAction(GameAgent<Risk, RiskAction> agent, Risk game, int player,
+      ExecutorService moves) throws InterruptedException {
+    Risk view = (Risk) game.getGame(player);
+    Future<RiskAction> move = moves.submit(() -> agent.computeNextAction(view, computationTime,
+        TimeUnit.MILLISECONDS));
+    RiskAction action;
+    try {
+      action = move.get(computationTime * TIMEOUT_FACTOR, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException | ExecutionException e) {
+      move.cancel(true);
+      return null;
+    } catch (InterruptedException e) {
+      move.cancel(true);
+      throw e;
+    }
+    if (action == null || !game.isValidAction(action)) {
+      return null;
+    }
+    return action;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static GameAgent<Risk, RiskAction> newAgent(Class<?> agentClass, Logger log)
+      throws ReflectiveOperationException {
+    try {
+      return (GameAgent<Risk, RiskAction>) agentClass.getConstructor(Logger.class)
+          .newInstance(log);
+    } catch (NoSuchMethodException e) {
+      return (GameAgent<Risk, RiskAction>) agentClass.getConstructor().newInstance();
+    }
+  }
+
+  /**
+   * Counts the results of every agent and rates them with Elo. Every match is rated as pairwise
+   * games between its players, in the order of the schedule so that the ratings do not depend on
+   * which match finished first.
+   */
+  private static List<Standing> rank(List<MatchResult> results,
+      List<Class<?>> agentClasses) {
+    List<Standing> standings = new ArrayList<>();
+    for (int agent = 0; agent < agentClasses.size(); agent++) {
+      String name = agentClasses.get(agent).getSimpleName();
+      if (agentClasses.indexOf(agentClasses.get(agent)) != agent) {
+        name += "#" + (agent + 1);
+      }
+      standings.add(new Standing(name));
+    }
+
+    double[] elo = new double[standings.size()];
+    Arrays.fill(elo, INITIAL_ELO);
+    for (MatchResult result : results) {
+      int[] seats = result.match.seats;
+      double[] change = new double[seats.length];
+      for (int p = 0; p < seats.length; p++) {
+        Standing standing = standings.get(seats[p]);
+        standing.matches++;
+        if (result.winner == p) {
+          standing.wins++;
+        } else if (result.winner >= 0 || result.disqualified == p) {
+          standing.losses++;
+        } else {
+          standing.draws++;
+        }
+        if (result.disqualified == p) {
+          standing.disqualifications++;
+        }
+        for (int q = 0; q < seats.length; q++) {
+          if (p != q) {
+            double expected = 1D / (1D + Math.pow(10D, (elo[seats[q]] - elo[seats[p]]) / 400D));
+            change[p] += ELO_FACTOR * (score(result, p, q) - expected);
+          }
+        }
+      }
+      for (int p = 0; p < seats.length; p++) {
+        elo[seats[p]] += change[p];
+      }
+    }
+    for (int agent = 0; agent < elo.length; agent++) {
+      standings.get(agent).elo = elo[agent];
+    }
+
+    return standings;
+  }
+
+  private static double score(MatchResult result, int player, int opponent) {
+    if (result.winner == player || result.disqualified == opponent) {
+      return 1D;
+    } else if (result.winner == opponent || result.disqualified == player) {
+      return 0D;
+    }
+    return 0.5D;
+  }
+
+  static final class Match {
+
+    final long seed;
+    // agent index per player id
+    final int[] seats;
+
+    Match(long seed, int[] seats) {
+      this.seed = seed;
+      this.seats = seats;
+    }
+  }
+
+  static final class MatchResult {
+
+    final Match match;
+    // player ids, -1 if there is none
+    final int winner;
+    final int disqualified;
+    final int actions;
+
+    MatchResult(Match match, int winner, int disqualified, int actions) {
+      this.match = match;
+      this.winner = winner;
+      this.disqualified = disqualified;
+      this.actions = actions;
+    }
+  }
+
+  static final class Standing {
+
+    final String name;
+    int matches;
+    int wins;
+    int draws;
+    int losses;
+    int disqualifications;
+    double elo;
+
+    Standing(String name) {
+      this.name = name;
+    }
+
+    double getWinRate() {
+      return matches == 0 ? 0D : (double) wins / matches;
+    }
+  }
+}
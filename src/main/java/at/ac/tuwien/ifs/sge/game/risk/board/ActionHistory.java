@@ -0,0 +1,96 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import at.ac.tuwien.ifs.sge.game.ActionRecord;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable list of action records which shares its prefix with the history it was appended to.
+ * Appending and reading the last record are constant time, every other index is served from an
+ * array which is built on first access.
+ *
+ * @param <A> the type of action
+ */
+final class ActionHistory<A> extends AbstractList<ActionRecord<A>> {
+
+  private static final ActionHistory<?> EMPTY = new ActionHistory<>(null, null, 0);
+
+  private final ActionHistory<A> parent;
+  private final ActionRecord<A> record;
+  private final int size;
+  private volatile ActionRecord<A>[] records;
+
+  private ActionHistory(ActionHistory<A> parent, ActionRecord<A> record, int size) {
+    this.parent = parent;
+    this.record = record;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  static <A> ActionHistory<A> empty() {
+    return (ActionHistory<A>) EMPTY;
+  }
+
+  static <A> ActionHistory<A> of(List<ActionRecord<A>> actionRecords) {
+    if (actionRecords instanceof ActionHistory) {
+      return (ActionHistory<A>) actionRecords;
+    }
+    ActionHistory<A> history = empty();
+    for (ActionRecord<A> actionRecord : actionRecords) {
+      history = history.append(actionRecord);
+    }
+    return history;
+  }
+
+  ActionHistory<A> append(ActionRecord<A> actionRecord) {
+    return new ActionHistory<>(this, actionRecord, size + 1);
+  }
+
+  /**
+   * Returns the history without its last record.
+   *
+   * @return the history before the last record was appended
+   */
+  ActionHistory<A> getParent() {
+    return parent;
+  }
+
+  ActionRecord<A> getLast() {
+    return record;
+  }
+
+  @Override
+  public ActionRecord<A> get(int index) {
+    Objects.checkIndex(index, size);
+    if (index == size - 1) {
+      return record;
+    }
+    return records()[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  private ActionRecord<A>[] records() {
+    ActionRecord<A>[] records = this.records;
+    if (records == null) {
+      records = (ActionRecord<A>[]) new ActionRecord<?>[size];
+      ActionHistory<A> history = this;
+      for (int i = size - 1; i >= 0; i--) {
+        ActionRecord<A>[] known = history.records;
+        if (known != null) {
+          System.arraycopy(known, 0, records, 0, i + 1);
+          break;
+        }
+        records[i] = history.record;
+        history = history.parent;
+      }
+      this.records = records;
+    }
+    return records;
+  }
+}
@@ -0,0 +1,323 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact outcome probabilities of Risk battles. A round is fought with one die per troop, at most
+ * maxAttackerDice and maxDefenderDice, the highest faces are compared pairwise and ties go to the
+ * defender. A battle is fought round after round until one side has no troops left, which is what
+ * attacking with the maximum number of troops again and again amounts to. Battles are tabulated up
+ * to cap troops per side, larger ones are fought round by round until they fit into the table.
+ */
+public final class BattleTable {
+
+  public static final int DEFAULT_CAP = 32;
+
+  private static final int FACES = 6;
+  private static final Map<Long, BattleTable> TABLES = new ConcurrentHashMap<>();
+
+  private final int maxAttackerDice;
+  private final int maxDefenderDice;
+  private final int cap;
+  // [attacker dice][defender dice][k], probability of at most k attacker casualties in a round
+  private final double[][][] roundDistributions;
+  // [attackers][defenders][cap + v], probability of at most v remaining troops, negative v count
+  // the remaining defenders of a lost battle, positive v the remaining attackers of a won one
+  private final double[][][] battleDistributions;
+
+  /**
+   * @param maxAttackerDice the number of dice the attacker rolls at most
+   * @param maxDefenderDice the number of dice the defender rolls at most
+   * @param cap             the number of troops per side up to which battles are tabulated
+   */
+  public BattleTable(int maxAttackerDice, int maxDefenderDice, int cap) {
+    if (maxAttackerDice < 1 || maxDefenderDice < 1) {
+      throw new IllegalArgumentException(
+          "Both sides need at least one die, got " + maxAttackerDice + " and " + maxDefenderDice);
+    }
+    if (cap < 1) {
+      throw new IllegalArgumentException("The cap must be positive, got " + cap);
+    }
+    this.maxAttackerDice = maxAttackerDice;
+    this.maxDefenderDice = maxDefenderDice;
+    this.cap = cap;
+    roundDistributions = new double[maxAttackerDice + 1][maxDefenderDice + 1][];
+    for (int a = 1; a <= maxAttackerDice; a++) {
+      for (int d = 1; d <= maxDefenderDice; d++) {
+        roundDistributions[a][d] = cumulative(roundProbabilities(a, d));
+      }
+    }
+    battleDistributions = battleDistributions();
+  }
+
+  /**
+   * Returns the shared table of the given dice with DEFAULT_CAP.
+   *
+   * @param maxAttackerDice the number of dice the attacker rolls at most
+   * @param maxDefenderDice the number of dice the defender rolls at most
+   * @return the table
+   */
+  public static BattleTable of(int maxAttackerDice, int maxDefenderDice) {
+    return TABLES.computeIfAbsent(((long) maxAttackerDice << 32) | maxDefenderDice,
+        key -> new BattleTable(maxAttackerDice, maxDefenderDice, DEFAULT_CAP));
+  }
+
+  public int getMaxAttackerDice() {
+    return maxAttackerDice;
+  }
+
+  public int getMaxDefenderDice() {
+    return maxDefenderDice;
+  }
+
+  public int getCap() {
+    return cap;
+  }
+
+  /**
+   * Returns the probability that the attacker loses the given number of troops in a round in which
+   * both sides roll the given number of dice. The defender loses the other compared dice.
+   *
+   * @param attackerDice        the number of dice of the attacker
+   * @param defenderDice        the number of dice of the defender
+   * @param attackerCasualties  the number of troops the attacker loses
+   * @return the probability of the casualties
+   */
+  public double getRoundProbability(int attackerDice, int defenderDice, int attackerCasualties) {
+    double[] distribution = roundDistribution(attackerDice, defenderDice);
+    if (attackerCasualties < 0 || attackerCasualties >= distribution.length) {
+      return 0D;
+    }
+    return distribution[attackerCasualties]
+        - (attackerCasualties == 0 ? 0D : distribution[attackerCasualties - 1]);
+  }
+
+  /**
+   * Draws the casualties of the attacker in a round in which both sides roll the given number of
+   * dice, with the same distribution as rolling the dice.
+   *
+   * @param attackerDice the number of dice of the attacker
+   * @param defenderDice the number of dice of the defender
+   * @param random       the source of randomness
+   * @return the number of troops the attacker loses
+   */
+  public int sampleRoundCasualties(int attackerDice, int defenderDice, Random random) {
+    if (attackerDice <= 0 || defenderDice <= 0) {
+      return 0;
+    }
+    return sample(roundDistribution(attackerDice, defenderDice), random.nextDouble());
+  }
+
+  /**
+   * @param attackers the number of troops the attacker fights with, at most cap
+   * @param defenders the number of troops of the defender, at most cap
+   * @return the probability that the attacker wins the battle
+   */
+  public double getWinProbability(int attackers, int defenders) {
+    return 1D - battleDistribution(attackers, defenders)[cap];
+  }
+
+  /**
+   * @param attackers the number of troops the attacker fights with, at most cap
+   * @param defenders the number of troops of the defender, at most cap
+   * @return the expected number of troops the attacker loses in the battle
+   */
+  public double getExpectedAttackerLosses(int attackers, int defenders) {
+    double[] distribution = battleDistribution(attackers, defenders);
+    double remaining = 0D;
+    for (int v = 1; v <= attackers; v++) {
+      remaining += v * (distribution[cap + v] - distribution[cap + v - 1]);
+    }
+    return attackers - remaining;
+  }
+
+  /**
+   * @param attackers the number of troops the attacker fights with, at most cap
+   * @param defenders the number of troops of the defender, at most cap
+   * @return the expected number of troops the defender loses in the battle
+   */
+  public double getExpectedDefenderLosses(int attackers, int defenders) {
+    double[] distribution = battleDistribution(attackers, defenders);
+    double remaining = 0D;
+    for (int v = -defenders; v < 0; v++) {
+      remaining -= v * (distribution[cap + v] - (v == -cap ? 0D : distribution[cap + v - 1]));
+    }
+    return defenders - remaining;
+  }
+
+  /**
+   * Draws the outcome of a whole battle in one step, with the same distribution as fighting it
+   * round by round.
+   *
+   * @param attackers the number of troops the attacker fights with
+   * @param defenders the number of troops of the defender
+   * @param random    the source of randomness
+   * @return the number of remaining attackers if the attacker wins, otherwise the negated number of
+   *     remaining defenders
+   */
+  public int sampleBattle(int attackers, int defenders, Random random) {
+    if (attackers < 1 || defenders < 1) {
+      throw new IllegalArgumentException(
+          "Both sides need troops, got " + attackers + " and " + defenders);
+    }
+    while (attackers > cap || defenders > cap) {
+      int attackerDice = Math.min(attackers, maxAttackerDice);
+      int defenderDice = Math.min(defenders, maxDefenderDice);
+      int attackerCasualties = sampleRoundCasualties(attackerDice, defenderDice, random);
+      attackers -= attackerCasualties;
+      defenders -= Math.min(attackerDice, defenderDice) - attackerCasualties;
+      if (attackers == 0) {
+        return -defenders;
+      } else if (defenders == 0) {
+        return attackers;
+      }
+    }
+    return sample(battleDistributions[attackers][defenders], random.nextDouble()) - cap;
+  }
+
+  private double[] roundDistribution(int attackerDice, int defenderDice) {
+    if (attackerDice < 1 || attackerDice > maxAttackerDice
+        || defenderDice < 1 || defenderDice > maxDefenderDice) {
+      throw new IllegalArgumentException("Between 1 and " + maxAttackerDice + " attacker and 1 and "
+          + maxDefenderDice + " defender dice are rolled, got " + attackerDice + " and "
+          + defenderDice);
+    }
+    return roundDistributions[attackerDice][defenderDice];
+  }
+
+  private double[] battleDistribution(int attackers, int defenders) {
+    if (attackers < 1 || attackers > cap || defenders < 1 || defenders > cap) {
+      throw new IllegalArgumentException("Battles are tabulated for 1 to " + cap
+          + " troops per side, got " + attackers + " and " + defenders);
+    }
+    return battleDistributions[attackers][defenders];
+  }
+
+  /**
+   * Returns the index of the first cumulative probability above u. Rounding errors can leave the
+   * last cumulative probability slightly below 1, so u beyond it picks the last possible outcome.
+   */
+  private static int sample(double[] cumulative, double u) {
+    int last = cumulative.length - 1;
+    while (last > 0 && cumulative[last] == cumulative[last - 1]) {
+      last--;
+    }
+    for (int i = 0; i < last; i++) {
+      if (u < cumulative[i]) {
+        return i;
+      }
+    }
+    return last;
+  }
+
+  private static double[] cumulative(double[] probabilities) {
+    double[] cumulative = new double[probabilities.length];
+    double sum = 0D;
+    for (int i = 0; i < probabilities.length; i++) {
+      sum += probabilities[i];
+      cumulative[i] = sum;
+    }
+    return cumulative;
+  }
+
+  /**
+   * Combines the distributions of the compared faces of both sides into the probabilities of the
+   * casualties of the attacker.
+   */
+  private static double[] roundProbabilities(int attackerDice, int defenderDice) {
+    int compared = Math.min(attackerDice, defenderDice);
+    Map<Integer, Double> attackerFaces = highestFaces(attackerDice, compared);
+    Map<Integer, Double> defenderFaces = highestFaces(defenderDice, compared);
+    double[] probabilities = new double[compared + 1];
+    for (Map.Entry<Integer, Double> attacker : attackerFaces.entrySet()) {
+      for (Map.Entry<Integer, Double> defender : defenderFaces.entrySet()) {
+        int casualties = 0;
+        int a = attacker.getKey();
+        int d = defender.getKey();
+        for (int die = 0; die < compared; die++, a /= FACES + 1, d /= FACES + 1) {
+          if (a % (FACES + 1) <= d % (FACES + 1)) {
+            casualties++;
+          }
+        }
+        probabilities[casualties] += attacker.getValue() * defender.getValue();
+      }
+    }
+    return probabilities;
+  }
+
+  /**
+   * Returns the distribution of the given number of highest faces of the given dice, sorted
+   * descending and packed into one int of base FACES + 1, the highest face in the lowest digit.
+   * Dice are added one at a time, so only the distinct sorted faces are ever enumerated.
+   */
+  private static Map<Integer, Double> highestFaces(int dice, int highest) {
+    Map<Integer, Double> distribution = new HashMap<>();
+    distribution.put(0, 1D);
+    for (int die = 0; die < dice; die++) {
+      Map<Integer, Double> next = new HashMap<>();
+      for (Map.Entry<Integer, Double> entry : distribution.entrySet()) {
+        for (int face = 1; face <= FACES; face++) {
+          next.merge(insert(entry.getKey(), face, highest), entry.getValue() / FACES, Double::sum);
+        }
+      }
+      distribution = next;
+    }
+    return distribution;
+  }
+
+  private static int insert(int faces, int face, int highest) {
+    int[] sorted = new int[highest + 1];
+    for (int i = 0; i < highest; i++, faces /= FACES + 1) {
+      sorted[i] = faces % (FACES + 1);
+    }
+    int i = highest;
+    while (i > 0 && sorted[i - 1] < face) {
+      sorted[i] = sorted[i - 1];
+      i--;
+    }
+    sorted[i] = face;
+    int packed = 0;
+    for (i = highest - 1; i >= 0; i--) {
+      packed = packed * (FACES + 1) + sorted[i];
+    }
+    return packed;
+  }
+
+  /**
+   * Propagates the outcome distributions from the smallest battles up, every battle is a mix of
+   * the battles its round can lead to.
+   */
+  private double[][][] battleDistributions() {
+    double[][][] probabilities = new double[cap + 1][cap + 1][];
+    for (int a = 0; a <= cap; a++) {
+      for (int d = 0; d <= cap; d++) {
+        double[] outcome = new double[2 * cap + 1];
+        if (a == 0 || d == 0) {
+          outcome[cap + a - d] = 1D;
+        } else {
+          int attackerDice = Math.min(a, maxAttackerDice);
+          int defenderDice = Math.min(d, maxDefenderDice);
+          int compared = Math.min(attackerDice, defenderDice);
+          for (int k = 0; k <= compared; k++) {
+            double p = getRoundProbability(attackerDice, defenderDice, k);
+            double[] after = probabilities[a - k][d - (compared - k)];
+            for (int v = 0; v < outcome.length; v++) {
+              outcome[v] += p * after[v];
+            }
+          }
+        }
+        probabilities[a][d] = outcome;
+      }
+    }
+    double[][][] distributions = new double[cap + 1][cap + 1][];
+    for (int a = 1; a <= cap; a++) {
+      for (int d = 1; d <= cap; d++) {
+        distributions[a][d] = cumulative(probabilities[a][d]);
+      }
+    }
+    return distributions;
+  }
+}
@@ -6,15 +6,14 @@ import at.ac.tuwien.ifs.sge.game.Game;
 import at.ac.tuwien.ifs.sge.game.risk.configuration.RiskConfiguration;
 import at.ac.tuwien.ifs.sge.game.risk.util.PriestLogic;
 import at.ac.tuwien.ifs.sge.util.Util;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -24,13 +23,16 @@ public class Risk implements Game<RiskAction, RiskBoard> {
   private final static int DRAW_CARD_PLAYER = -2;
   private final static int MISSION_FULFILLED_PLAYER = -3;
   private final static int BONUS_PLAYER = -5;
+  private final static long NO_ACTION = Long.MIN_VALUE;
 
   private final boolean canonical;
-  private final Dice attackerDice;
-  private final Dice defenderDice;
+  private Dice attackerDice;
+  private Dice defenderDice;
   private int currentPlayerId;
-  private List<ActionRecord<RiskAction>> actionRecords;
+  private ActionHistory<RiskAction> actionRecords;
   private RiskBoard board;
+  private int[] undoPlayerIds;
+  private boolean undoable = true;
 
   public Risk() {
     this(RiskConfiguration.RISK_DEFAULT_CONFIG, 2);
@@ -46,7 +48,7 @@ public class Risk implements Game<RiskAction, RiskBoard> {
   }
 
   public Risk(RiskConfiguration configuration, int numberOfPlayers) {
-    this(0, true, Collections.emptyList(), new RiskBoard(configuration, numberOfPlayers));
+    this(0, true, ActionHistory.empty(), new RiskBoard(configuration, numberOfPlayers));
     if (numberOfPlayers > configuration.getMaxNumberOfPlayers()) {
       throw new IllegalArgumentException("Wrong number of players");
     }
@@ -60,22 +62,12 @@ public class Risk implements Game<RiskAction, RiskBoard> {
       List<ActionRecord<RiskAction>> actionRecords, RiskBoard board) {
     this.currentPlayerId = currentPlayerId;
     this.canonical = canonical;
-    this.actionRecords = new ArrayList<>(actionRecords);
+    this.actionRecords = ActionHistory.of(actionRecords);
     this.board = new RiskBoard(board);
     if (!(getMinimumNumberOfPlayers() <= getNumberOfPlayers()
         && getNumberOfPlayers() <= getMaximumNumberOfPlayers())) {
       throw new IllegalArgumentException("Wrong number of players");
     }
-
-    this.attackerDice = new Dice(board.getMaxAttackerDice());
-    this.defenderDice = new Dice(board.getMaxDefenderDice());
-  }
-
-  private static Set<RiskAction> possibleCasualties(final int attackerDice,
-      final int defenderDice) {
-    final int dice = Math.min(attackerDice, defenderDice);
-    return IntStream.rangeClosed(0, dice)
-        .mapToObj(die -> RiskAction.casualties(die, dice - die)).collect(Collectors.toSet());
   }
 
   private static char decreaseLexicographical(char c) {
@@ -131,9 +123,7 @@ public class Risk implements Game<RiskAction, RiskBoard> {
   @Override
   public boolean isGameOver() {
     // all territories belong to one player
-    return !isInitialSelect() && board.getTerritories().values().stream().mapToInt(
-        RiskTerritory::getOccupantPlayerId).distinct().count()
-        == 1L;
+    return !isInitialSelect() && board.getNrOfLivingPlayers() == 1;
   }
 
   @Override
@@ -158,12 +148,28 @@ public class Risk implements Game<RiskAction, RiskBoard> {
 
   @Override
   public double getUtilityValue(int i) {
-    Set<Integer> playersInGame = board.getTerritories().values().stream()
-        .map(RiskTerritory::getOccupantPlayerId).collect(Collectors.toSet());
-    if (playersInGame.size() <= 1 && playersInGame.contains(i)) {
-      return 1D;
+    return board.getNrOfTerritoriesOccupiedByPlayer(i) == board.getTerritoryIdArray().length
+        ? 1D : 0D;
+  }
+
+  @Override
+  public double[] getGameUtilityValue() {
+    double[] utilityValues = new double[getNumberOfPlayers()];
+    if (isGameOver()) {
+      utilityValues[board.getTerritoryOccupantId(board.getTerritoryIdArray()[0])] = 1D;
     }
-    return 0D;
+    return utilityValues;
+  }
+
+  /**
+   * Returns a 64-bit Zobrist key of this position. Equal positions have equal keys, different
+   * positions collide with negligible probability. The key is maintained incrementally while
+   * actions are applied, so it is cheap enough to be used for transposition tables.
+   *
+   * @return the Zobrist key of this position
+   */
+  public long getZobristKey() {
+    return board.getZobristKey(currentPlayerId);
   }
 
   @Override
@@ -173,37 +179,59 @@ public class Risk implements Game<RiskAction, RiskBoard> {
 
   @Override
   public Set<RiskAction> getPossibleActions() {
+    long[] actions = new long[64];
+    int size = getPossibleActions(actions);
+    if (size > actions.length) {
+      actions = new long[size];
+      getPossibleActions(actions);
+    }
+    Set<RiskAction> possibleActions = new HashSet<>(1 + (int) (size / 0.75f));
+    for (int i = 0; i < size; i++) {
+      possibleActions.add(RiskAction.decode(actions[i]));
+    }
+    return possibleActions;
+  }
+
+  /**
+   * Writes the possible actions encoded as longs (see RiskAction.decode(long)) into the given
+   * buffer and returns how many there are. The actions are the same as the ones of
+   * getPossibleActions(), but no set is created along the way. If the buffer is too small only the
+   * first buffer.length actions are written, the returned number counts all of them regardless.
+   *
+   * @param actions the buffer to write the encoded actions to
+   * @return the number of possible actions
+   */
+  public int getPossibleActions(long[] actions) {
     if (isGameOver()) {
-      return Collections.emptySet();
+      return 0;
     }
     if (currentPlayerId < 0) {
       if (board.isAttack()) {
-        return casualtiesGPA();
+        return casualtiesGPA(actions);
       } else if (currentPlayerId == BONUS_PLAYER) {
-        return bonusGPA();
+        return bonusGPA(actions);
       }
     } else if (isInitialSelect()) {
-      return initialSelectGPA();
+      return initialSelectGPA(actions);
     } else if (isInitialReinforce()) {
-      return initialReinforceGPA();
+      return initialReinforceGPA(actions);
     } else if (board.hasToTradeInCards(currentPlayerId)) {
-      return tradeInGPA();
+      return tradeInGPA(actions, 0);
     } else if (board.isReinforcementPhase()) {
-      return reinforceGPA();
+      return reinforceGPA(actions);
     } else if (board.isAttackPhase()) {
-      return attackGPA();
+      return attackGPA(actions);
     } else if (board.isOccupyPhase()) {
-      return occupyGPA();
+      return occupyGPA(actions);
     } else if (board.isFortifyPhase()) {
-      return fortifyGPA();
+      return fortifyGPA(actions);
     }
 
-    return Collections.emptySet();
+    return 0;
   }
 
   private boolean isInitialSelect() {
-    if (board.isInitialSelectMaybe() && (board.getTerritories().values().stream().anyMatch(
-        t -> !(0 <= t.getOccupantPlayerId() && t.getOccupantPlayerId() < getNumberOfPlayers())))) {
+    if (board.isInitialSelectMaybe() && board.getNrOfTerritoriesOccupiedByPlayer(-1) > 0) {
       return true;
     }
     board.disableInitialSelectMaybe();
@@ -234,108 +262,413 @@ public class Risk implements Game<RiskAction, RiskBoard> {
     return PriestLogic.valid(board.missionFulfilled(player));
   }
 
-  private Set<RiskAction> initialSelectGPA() {
-    return board.getTerritories().entrySet().stream().filter(
-        t -> !(0 <= t.getValue().getOccupantPlayerId()
-            && t.getValue().getOccupantPlayerId() < getNumberOfPlayers())).mapToInt(Entry::getKey)
-        .mapToObj(RiskAction::select).collect(Collectors.toSet());
+  private static int put(long[] actions, int size, long action) {
+    if (size < actions.length) {
+      actions[size] = action;
+    }
+    return size + 1;
   }
 
-  private Set<RiskAction> initialReinforceGPA() {
-    return board.getTerritoriesOccupiedByPlayer(this.currentPlayerId).stream()
-        .map(id -> RiskAction.reinforce(id, 1)).collect(Collectors.toSet());
+  private int initialSelectGPA(long[] actions) {
+    int size = 0;
+    for (int territoryId : board.getTerritoryIdArray()) {
+      int occupant = board.getTerritoryOccupantId(territoryId);
+      if (!(0 <= occupant && occupant < getNumberOfPlayers())) {
+        size = put(actions, size, RiskAction.encode(RiskAction.NO_ID, territoryId, 1));
+      }
+    }
+    return size;
   }
 
-  private Set<RiskAction> tradeInGPA() {
-    return board.getTradeInSlots(currentPlayerId).stream().map(RiskAction::playCards)
-        .collect(Collectors.toUnmodifiableSet());
+  private int initialReinforceGPA(long[] actions) {
+    int size = 0;
+    for (int territoryId : board.getTerritoryIdArray()) {
+      if (board.getTerritoryOccupantId(territoryId) == currentPlayerId) {
+        size = put(actions, size, RiskAction.encode(RiskAction.NO_ID, territoryId, 1));
+      }
+    }
+    return size;
   }
 
-  private Set<RiskAction> bonusGPA() {
-    return IntStream
-        .rangeClosed(board.getMinMatchingTerritories(), board.getMaxMatchingTerritories())
-        .mapToObj(RiskAction::bonusTroopsFromCards).collect(Collectors.toUnmodifiableSet());
+  private int tradeInGPA(long[] actions, int size) {
+    for (Set<Integer> slots : board.getTradeInSlots(currentPlayerId)) {
+      size = put(actions, size, RiskAction
+          .encode(RiskAction.CARD_ID, RiskAction.CARD_ID, RiskAction.idsToSlotIds(slots)));
+    }
+    return size;
   }
 
-  private Set<RiskAction> reinforceGPA() {
-    Set<RiskAction> actions = new HashSet<>();
+  private int bonusGPA(long[] actions) {
+    int size = 0;
+    for (int bonus = board.getMinMatchingTerritories();
+        bonus <= board.getMaxMatchingTerritories(); bonus++) {
+      size = put(actions, size, RiskAction.encode(RiskAction.BONUS_ID, RiskAction.BONUS_ID, bonus));
+    }
+    return size;
+  }
+
+  private int reinforceGPA(long[] actions) {
+    int size = 0;
     int reinforcementsLeft = board.reinforcementsLeft(currentPlayerId);
 
     if (board.couldTradeInCards(currentPlayerId)) {
-      actions.addAll(tradeInGPA());
+      size = tradeInGPA(actions, size);
     }
 
-    Map<Integer, RiskTerritory> territories = board.getTerritories().entrySet().stream().filter(
-        t -> t.getValue().getOccupantPlayerId() == currentPlayerId &&
-            !board.isReinforcedAlready(t.getKey()))
-        .collect(Collectors.toMap(Entry::getKey, Entry::getValue));
-
-    if (territories.size() == 1) {
-      for (Entry<Integer, RiskTerritory> territory : territories.entrySet()) {
-        actions.add(RiskAction.reinforce(territory.getKey(), reinforcementsLeft));
+    final int tradeInTerritoryBonus = board.getTradeInTerritoryBonus();
+    int reinforceOptions = 0;
+    int lastOption = -1;
+    int promisedReinforcements = 0;
+    for (int territoryId : board.getTerritoryIdArray()) {
+      if (board.getTerritoryOccupantId(territoryId) == currentPlayerId
+          && !board.isReinforcedAlready(territoryId)) {
+        reinforceOptions++;
+        lastOption = territoryId;
+        if (board.inBonusTerritories(territoryId)) {
+          promisedReinforcements += tradeInTerritoryBonus;
+        }
       }
-    } else {
+    }
 
-      final int tradeInTerritoryBonus = board.getTradeInTerritoryBonus();
-      final int promisedReinforcements = (int) (territories.keySet().stream()
-          .filter(t -> board.inBonusTerritories(t)).count() * tradeInTerritoryBonus);
+    if (reinforceOptions == 1) {
+      return put(actions, size,
+          RiskAction.encode(RiskAction.NO_ID, lastOption, reinforcementsLeft));
+    }
 
-      for (Entry<Integer, RiskTerritory> territory : territories.entrySet()) {
-        final int territoryId = territory.getKey();
+    for (int territoryId : board.getTerritoryIdArray()) {
+      if (board.getTerritoryOccupantId(territoryId) == currentPlayerId
+          && !board.isReinforcedAlready(territoryId)) {
         final boolean inBonusTerritories = board.inBonusTerritories(territoryId);
         for (int r = (inBonusTerritories ? tradeInTerritoryBonus : 1);
             r <= (reinforcementsLeft - (promisedReinforcements - (inBonusTerritories
                 ? tradeInTerritoryBonus : 0)));
             r++) {
-          actions.add(RiskAction.reinforce(territoryId, r));
+          size = put(actions, size, RiskAction.encode(RiskAction.NO_ID, territoryId, r));
         }
       }
     }
-    return actions;
+    return size;
   }
 
-  private Set<RiskAction> attackGPA() {
-    Set<RiskAction> actions = new HashSet<>();
-    actions.add(RiskAction.endPhase());
+  private int attackGPA(long[] actions) {
+    int size = put(actions, 0, RiskAction.ENCODED_END_PHASE);
+
+    for (int territoryId : board.getTerritoryIdArray()) {
+      if (board.getTerritoryOccupantId(territoryId) == currentPlayerId
+          && board.getTerritoryTroops(territoryId) > 1) {
+        int maxAttack = board.getMaxAttackingTroops(territoryId);
+        for (int neighborId : board.getNeighborIds(territoryId)) {
+          if (board.getTerritoryOccupantId(neighborId) != currentPlayerId) {
+            for (int t = 1; t <= maxAttack; t++) {
+              size = put(actions, size, RiskAction.encode(territoryId, neighborId, t));
+            }
+          }
+        }
+      }
+    }
 
-    Set<Integer> territories = board
-        .getTerritoriesOccupiedByPlayerWithMoreThanOneTroops(this.currentPlayerId);
-    for (Integer territory : territories) {
-      Set<Integer> neighbors = board.neighboringEnemyTerritories(territory);
-      int maxAttack = board.getMaxAttackingTroops(territory);
-      for (int t = 1; t <= maxAttack; t++) {
-        final int finalT = t;
-        actions.addAll(
-            neighbors.stream().map(n -> RiskAction.attack(territory, n, finalT))
-                .collect(Collectors.toSet()));
+    return size;
+  }
+
+  private int casualtiesGPA(long[] actions) {
+    int size = 0;
+    final int dice = Math.min(board.getNrOfAttackerDice(), board.getNrOfDefenderDice());
+    for (int die = 0; die <= dice; die++) {
+      size = put(actions, size, RiskAction.encode(RiskAction.CASUALTIES_ID,
+          RiskAction.CASUALTIES_ID, RiskAction.casualtiesValue(die, dice - die)));
+    }
+    return size;
+  }
+
+  private int occupyGPA(long[] actions) {
+    int size = 0;
+    for (int t = 1; t <= board.getMaxOccupy(); t++) {
+      size = put(actions, size, RiskAction.encode(RiskAction.OCCUPY_ID, RiskAction.OCCUPY_ID, t));
+    }
+    return size;
+  }
+
+  private int fortifyGPA(long[] actions) {
+    int size = put(actions, 0, RiskAction.ENCODED_END_PHASE);
+
+    for (int src : board.getTerritoryIdArray()) {
+      if (board.getTerritoryOccupantId(src) == currentPlayerId
+          && board.getTerritoryTroops(src) > 1) {
+        int fortifyableTroops = board.getFortifyableTroops(src);
+        if (board.isFortifyOnlyFromSingleTerritory()) {
+          for (int dest : board.getNeighborIds(src)) {
+            if (board.getTerritoryOccupantId(dest) == currentPlayerId) {
+              for (int t = 1; t <= fortifyableTroops; t++) {
+                size = put(actions, size, RiskAction.encode(src, dest, t));
+              }
+            }
+          }
+        } else {
+          for (int dest : board.getFortifyableTerritories(src)) {
+            for (int t = 1; t <= fortifyableTroops; t++) {
+              size = put(actions, size, RiskAction.encode(src, dest, t));
+            }
+          }
+        }
       }
     }
 
-    return actions;
+    return size;
   }
 
-  private Set<RiskAction> casualtiesGPA() {
-    return possibleCasualties(board.getNrOfAttackerDice(), board.getNrOfDefenderDice());
+  /**
+   * Draws one of the possible actions uniformly at random, i.e. with the same distribution as a
+   * random element of getPossibleActions(). Only the number of actions per territory is counted,
+   * the actions themselves are never enumerated.
+   *
+   * @param random the source of randomness
+   * @return a random possible action or null if there is none
+   */
+  public RiskAction sampleRandomAction(Random random) {
+    if (isGameOver()) {
+      return null;
+    }
+    long action = NO_ACTION;
+    if (currentPlayerId < 0) {
+      if (board.isAttack()) {
+        int dice = Math.min(board.getNrOfAttackerDice(), board.getNrOfDefenderDice());
+        int die = random.nextInt(dice + 1);
+        action = RiskAction.encode(RiskAction.CASUALTIES_ID, RiskAction.CASUALTIES_ID,
+            RiskAction.casualtiesValue(die, dice - die));
+      } else if (currentPlayerId == BONUS_PLAYER) {
+        int min = board.getMinMatchingTerritories();
+        int max = board.getMaxMatchingTerritories();
+        if (min <= max) {
+          action = RiskAction.encode(RiskAction.BONUS_ID, RiskAction.BONUS_ID,
+              min + random.nextInt(max - min + 1));
+        }
+      }
+    } else if (isInitialSelect()) {
+      action = initialSelectSample(random);
+    } else if (isInitialReinforce()) {
+      action = initialReinforceSample(random);
+    } else if (board.hasToTradeInCards(currentPlayerId)) {
+      Set<Set<Integer>> tradeInSlots = board.getTradeInSlots(currentPlayerId);
+      if (!tradeInSlots.isEmpty()) {
+        action = tradeInSample(tradeInSlots, random.nextInt(tradeInSlots.size()));
+      }
+    } else if (board.isReinforcementPhase()) {
+      action = reinforceSample(random);
+    } else if (board.isAttackPhase()) {
+      action = attackSample(random);
+    } else if (board.isOccupyPhase()) {
+      if (board.getMaxOccupy() >= 1) {
+        action = RiskAction.encode(RiskAction.OCCUPY_ID, RiskAction.OCCUPY_ID,
+            1 + random.nextInt(board.getMaxOccupy()));
+      }
+    } else if (board.isFortifyPhase()) {
+      action = fortifySample(random);
+    }
+
+    return action == NO_ACTION ? null : RiskAction.decode(action);
+  }
+
+  private long initialSelectSample(Random random) {
+    int size = 0;
+    for (int territoryId : board.getTerritoryIdArray()) {
+      int occupant = board.getTerritoryOccupantId(territoryId);
+      if (!(0 <= occupant && occupant < getNumberOfPlayers())) {
+        size++;
+      }
+    }
+    if (size == 0) {
+      return NO_ACTION;
+    }
+    int index = random.nextInt(size);
+    for (int territoryId : board.getTerritoryIdArray()) {
+      int occupant = board.getTerritoryOccupantId(territoryId);
+      if (!(0 <= occupant && occupant < getNumberOfPlayers()) && index-- == 0) {
+        return RiskAction.encode(RiskAction.NO_ID, territoryId, 1);
+      }
+    }
+    return NO_ACTION;
+  }
+
+  private long initialReinforceSample(Random random) {
+    int size = board.getNrOfTerritoriesOccupiedByPlayer(currentPlayerId);
+    if (size == 0) {
+      return NO_ACTION;
+    }
+    int index = random.nextInt(size);
+    for (int territoryId : board.getTerritoryIdArray()) {
+      if (board.getTerritoryOccupantId(territoryId) == currentPlayerId && index-- == 0) {
+        return RiskAction.encode(RiskAction.NO_ID, territoryId, 1);
+      }
+    }
+    return NO_ACTION;
   }
 
-  private Set<RiskAction> occupyGPA() {
-    return IntStream.rangeClosed(1, board.getMaxOccupy()).mapToObj(RiskAction::occupy).collect(
-        Collectors.toSet());
+  private static long tradeInSample(Set<Set<Integer>> tradeInSlots, int index) {
+    for (Set<Integer> slots : tradeInSlots) {
+      if (index-- == 0) {
+        return RiskAction
+            .encode(RiskAction.CARD_ID, RiskAction.CARD_ID, RiskAction.idsToSlotIds(slots));
+      }
+    }
+    return NO_ACTION;
   }
 
-  private Set<RiskAction> fortifyGPA() {
-    Set<RiskAction> actions = new HashSet<>();
-    actions.add(RiskAction.endPhase());
+  private long reinforceSample(Random random) {
+    Set<Set<Integer>> tradeInSlots = board.couldTradeInCards(currentPlayerId)
+        ? board.getTradeInSlots(currentPlayerId) : Collections.emptySet();
+    int reinforcementsLeft = board.reinforcementsLeft(currentPlayerId);
+    final int tradeInTerritoryBonus = board.getTradeInTerritoryBonus();
+
+    int reinforceOptions = 0;
+    int lastOption = -1;
+    int promisedReinforcements = 0;
+    for (int territoryId : board.getTerritoryIdArray()) {
+      if (board.getTerritoryOccupantId(territoryId) == currentPlayerId
+          && !board.isReinforcedAlready(territoryId)) {
+        reinforceOptions++;
+        lastOption = territoryId;
+        if (board.inBonusTerritories(territoryId)) {
+          promisedReinforcements += tradeInTerritoryBonus;
+        }
+      }
+    }
 
-    for (Integer src : board.getTerritoriesOccupiedByPlayerWithMoreThanOneTroops(currentPlayerId)) {
-      for (Integer dest : board.getFortifyableTerritories(src)) {
-        for (int t = 1; t <= board.getFortifyableTroops(src); t++) {
-          actions.add(RiskAction.fortify(src, dest, t));
+    int size = tradeInSlots.size();
+    if (reinforceOptions == 1) {
+      size++;
+    } else {
+      for (int territoryId : board.getTerritoryIdArray()) {
+        if (board.getTerritoryOccupantId(territoryId) == currentPlayerId
+            && !board.isReinforcedAlready(territoryId)) {
+          size += reinforceRange(territoryId, reinforcementsLeft, promisedReinforcements);
         }
       }
     }
+    if (size == 0) {
+      return NO_ACTION;
+    }
 
-    return actions;
+    int index = random.nextInt(size);
+    if (index < tradeInSlots.size()) {
+      return tradeInSample(tradeInSlots, index);
+    }
+    index -= tradeInSlots.size();
+    if (reinforceOptions == 1) {
+      return RiskAction.encode(RiskAction.NO_ID, lastOption, reinforcementsLeft);
+    }
+    for (int territoryId : board.getTerritoryIdArray()) {
+      if (board.getTerritoryOccupantId(territoryId) == currentPlayerId
+          && !board.isReinforcedAlready(territoryId)) {
+        int range = reinforceRange(territoryId, reinforcementsLeft, promisedReinforcements);
+        if (index < range) {
+          int min = board.inBonusTerritories(territoryId) ? tradeInTerritoryBonus : 1;
+          return RiskAction.encode(RiskAction.NO_ID, territoryId, min + index);
+        }
+        index -= range;
+      }
+    }
+    return NO_ACTION;
+  }
+
+  private int reinforceRange(int territoryId, int reinforcementsLeft, int promisedReinforcements) {
+    final int tradeInTerritoryBonus = board.getTradeInTerritoryBonus();
+    final boolean inBonusTerritories = board.inBonusTerritories(territoryId);
+    int min = inBonusTerritories ? tradeInTerritoryBonus : 1;
+    int max = reinforcementsLeft - (promisedReinforcements - (inBonusTerritories
+        ? tradeInTerritoryBonus : 0));
+    return Math.max(0, max - min + 1);
+  }
+
+  private int attackRange(int territoryId) {
+    if (board.getTerritoryOccupantId(territoryId) != currentPlayerId
+        || board.getTerritoryTroops(territoryId) <= 1) {
+      return 0;
+    }
+    return board.getNrOfNeighboringEnemyTerritories(territoryId)
+        * Math.max(0, board.getMaxAttackingTroops(territoryId));
+  }
+
+  private long attackSample(Random random) {
+    int size = 1;
+    for (int territoryId : board.getTerritoryIdArray()) {
+      size += attackRange(territoryId);
+    }
+
+    int index = random.nextInt(size);
+    if (index == 0) {
+      return RiskAction.ENCODED_END_PHASE;
+    }
+    index--;
+    for (int territoryId : board.getTerritoryIdArray()) {
+      int range = attackRange(territoryId);
+      if (index < range) {
+        int maxAttack = board.getMaxAttackingTroops(territoryId);
+        int enemy = index / maxAttack;
+        for (int neighborId : board.getNeighborIds(territoryId)) {
+          if (board.getTerritoryOccupantId(neighborId) != currentPlayerId && enemy-- == 0) {
+            return RiskAction.encode(territoryId, neighborId, 1 + index % maxAttack);
+          }
+        }
+      }
+      index -= range;
+    }
+    return NO_ACTION;
+  }
+
+  private int fortifyDestinations(int src) {
+    if (!board.isFortifyOnlyFromSingleTerritory()) {
+      return board.getFortifyableTerritories(src).size();
+    }
+    return board.getNrOfNeighboringFriendlyTerritories(src);
+  }
+
+  private int fortifyDestination(int src, int index) {
+    if (!board.isFortifyOnlyFromSingleTerritory()) {
+      for (int dest : board.getFortifyableTerritories(src)) {
+        if (index-- == 0) {
+          return dest;
+        }
+      }
+    } else {
+      for (int dest : board.getNeighborIds(src)) {
+        if (board.getTerritoryOccupantId(dest) == currentPlayerId && index-- == 0) {
+          return dest;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private int fortifyRange(int src) {
+    if (board.getTerritoryOccupantId(src) != currentPlayerId
+        || board.getTerritoryTroops(src) <= 1) {
+      return 0;
+    }
+    int fortifyableTroops = board.getFortifyableTroops(src);
+    return fortifyableTroops <= 0 ? 0 : fortifyDestinations(src) * fortifyableTroops;
+  }
+
+  private long fortifySample(Random random) {
+    int size = 1;
+    for (int src : board.getTerritoryIdArray()) {
+      size += fortifyRange(src);
+    }
+
+    int index = random.nextInt(size);
+    if (index == 0) {
+      return RiskAction.ENCODED_END_PHASE;
+    }
+    index--;
+    for (int src : board.getTerritoryIdArray()) {
+      int range = fortifyRange(src);
+      if (index < range) {
+        int fortifyableTroops = board.getFortifyableTroops(src);
+        return RiskAction.encode(src, fortifyDestination(src, index / fortifyableTroops),
+            1 + index % fortifyableTroops);
+      }
+      index -= range;
+    }
+    return NO_ACTION;
   }
 
   @Override
@@ -343,6 +676,17 @@ public class Risk implements Game<RiskAction, RiskBoard> {
     return new RiskBoard(board);
   }
 
+  /**
+   * Returns the board of this game itself instead of a copy. Unlike getBoard() this does not make
+   * the next action copy the state shared with the returned board, so it is cheap enough to be
+   * called for every action of a simulation. The returned board changes with this game.
+   *
+   * @return the board of this game
+   */
+  public RiskBoard peekBoard() {
+    return board;
+  }
+
   @Override
   public boolean isValidAction(RiskAction riskAction) {
     if (riskAction == null || isGameOver()) {
@@ -421,36 +765,158 @@ public class Risk implements Game<RiskAction, RiskBoard> {
     if (isGameOver()) {
       throw new IllegalArgumentException("Game is over");
     }
-    Risk next = null;
+    Risk next = new Risk(this);
+    return next.applyAction(riskAction) ? next : null;
+  }
+
+  /**
+   * Applies the given action to this game instead of a copy of it. Unlike doAction this mutates the
+   * game, but every applied action can be taken back with undo() unless setUndoable(false) was
+   * called. Meant for simulations which would otherwise create a new game for every action.
+   *
+   * @param riskAction the action to apply
+   */
+  public void apply(RiskAction riskAction) {
+    if (riskAction == null) {
+      throw new IllegalArgumentException("Found null");
+    }
+    if (isGameOver()) {
+      throw new IllegalArgumentException("Game is over");
+    }
+    apply(riskAction, false);
+  }
+
+  /**
+   * Attacks from attackingId with the maximum number of troops again and again until either the
+   * defending territory is conquered or all mobile troops of the attacking territory are lost. The
+   * outcome of the whole battle is drawn from getBattleTable() in one step, so this is applied like
+   * two actions: the first attack and the casualties of the whole battle. Both are recorded and can
+   * be taken back with undo() one after the other. Meant for simulations, the casualties of a whole
+   * battle are no action other games accept.
+   *
+   * @param attackingId the id of the attacking territory
+   * @param defendingId the id of the defending territory
+   * @param random      the source of randomness
+   */
+  public void applyBattle(int attackingId, int defendingId, Random random) {
+    RiskAction attack = RiskAction.attack(attackingId, defendingId,
+        board.getMaxAttackingTroops(attackingId));
+    if (currentPlayerId < 0 || !board.isAttackPhase() || !isValidAction(attack)) {
+      throw new IllegalArgumentException("Cannot attack " + defendingId + " from " + attackingId);
+    }
+    int attackers = board.getMobileTroops(attackingId);
+    int defenders = board.getTerritoryTroops(defendingId);
+    int outcome = getBattleTable().sampleBattle(attackers, defenders, random);
+    apply(attack);
+    apply(RiskAction.casualties(outcome > 0 ? attackers - outcome : attackers,
+        outcome > 0 ? defenders : defenders + outcome), true);
+  }
+
+  /**
+   * Switches undo off or on for the actions applied from now on. Without undo apply() and
+   * applyBattle() push no savepoints: the changes are not journaled and the state is not marked
+   * as shared with a savepoint, which would make the next action copy it again. Meant for playouts
+   * which never take their actions back. Switching undo off discards the existing savepoints, so
+   * undo() returns false until actions are applied with undo again. An action that fails without
+   * undo leaves the game in an undefined state.
+   *
+   * @param undoable whether the actions applied from now on can be taken back
+   */
+  public void setUndoable(boolean undoable) {
+    this.undoable = undoable;
+    if (!undoable) {
+      board.discardSavepoints();
+    }
+  }
+
+  private void apply(RiskAction riskAction, boolean wholeBattle) {
+    if (!undoable) {
+      if (!(wholeBattle ? battleDA(riskAction) : applyAction(riskAction))) {
+        throw new IllegalArgumentException("Could not apply " + riskAction);
+      }
+      return;
+    }
+    int depth = board.getSavepointDepth();
+    if (undoPlayerIds == null) {
+      undoPlayerIds = new int[16];
+    } else if (depth == undoPlayerIds.length) {
+      undoPlayerIds = Arrays.copyOf(undoPlayerIds, depth * 2);
+    }
+    undoPlayerIds[depth] = currentPlayerId;
+    board.savepoint();
+    boolean applied = false;
+    try {
+      applied = wholeBattle ? battleDA(riskAction) : applyAction(riskAction);
+    } finally {
+      if (!applied) {
+        currentPlayerId = undoPlayerIds[depth];
+        board.rollback();
+      }
+    }
+    if (!applied) {
+      throw new IllegalArgumentException("Could not apply " + riskAction);
+    }
+  }
+
+  /**
+   * Applies the next action of chance, drawn by determineNextAction(): the casualties of the
+   * current attack or the bonus of a trade-in. Like apply(RiskAction) it can be taken back with
+   * undo() unless setUndoable(false) was called. Throws an IllegalArgumentException if a player
+   * is to move or the game is over.
+   */
+  public void apply() {
+    apply(determineNextAction());
+  }
+
+  /**
+   * Takes back the last action applied with apply() or the last step of applyBattle().
+   *
+   * @return false if there is no savepoint to go back to, i.e. no action was applied with undo
+   *     since this game was created, since setUndoable(false) or since all were taken back
+   */
+  public boolean undo() {
+    if (board.getSavepointDepth() == 0) {
+      return false;
+    }
+    currentPlayerId = undoPlayerIds[board.getSavepointDepth() - 1];
+    board.rollback();
+    actionRecords = actionRecords.getParent();
+    return true;
+  }
+
+  private boolean applyAction(RiskAction riskAction) {
+    int player = currentPlayerId;
     if (currentPlayerId < 0) {
       if (board.isAttack()) {
-        next = casualtiesDA(riskAction);
+        casualtiesDA(riskAction);
       } else if (currentPlayerId == BONUS_PLAYER) {
-        next = bonusDA(riskAction);
+        bonusDA(riskAction);
+      } else {
+        return false;
       }
     } else if (isInitialSelect()) {
-      next = initialSelectDA(riskAction);
+      initialSelectDA(riskAction);
     } else if (isInitialReinforce()) {
-      next = initialReinforceDA(riskAction);
+      initialReinforceDA(riskAction);
     } else if (board.allowedToTradeIn(currentPlayerId) && riskAction.isCardIds()) {
-      next = tradeInDA(riskAction);
+      tradeInDA(riskAction);
     } else if (board.isReinforcementPhase()) {
-      next = reinforceDA(riskAction);
+      reinforceDA(riskAction);
     } else if (board.isAttackPhase()) {
-      next = attackDA(riskAction);
+      attackDA(riskAction);
     } else if (board.isOccupyPhase()) {
-      next = occupyDA(riskAction);
+      occupyDA(riskAction);
     } else if (board.isFortifyPhase()) {
-      next = fortifyDA(riskAction);
+      fortifyDA(riskAction);
+    } else {
+      return false;
     }
 
-    if (next != null) {
-      next.actionRecords.add(new ActionRecord<>(this.currentPlayerId, riskAction));
-    }
-    return next;
+    actionRecords = actionRecords.append(new ActionRecord<>(player, riskAction));
+    return true;
   }
 
-  private Risk initialSelectDA(RiskAction riskAction) {
+  private void initialSelectDA(RiskAction riskAction) {
     int selected = riskAction.selected();
 
     if (!board.isTerritory(selected)) {
@@ -464,24 +930,21 @@ public class Risk implements Game<RiskAction, RiskBoard> {
           "Specified territoryId has already an occupant, could therefore not select");
     }
 
-    Risk next = new Risk(this);
-    next.board.initialSelect(selected, next.currentPlayerId);
-    next.currentPlayerId =
-        (next.currentPlayerId + (getNumberOfPlayers() - 1)) % getNumberOfPlayers();
+    board.initialSelect(selected, currentPlayerId);
+    currentPlayerId = (currentPlayerId + (getNumberOfPlayers() - 1)) % getNumberOfPlayers();
 
-    if (!next.isInitialSelect()) {
-      if (next.isInitialReinforce()) {
-        next.currentPlayerId = 0;
+    if (!isInitialSelect()) {
+      if (isInitialReinforce()) {
+        currentPlayerId = 0;
       } else {
-        next.currentPlayerId = 1;
-        next.board.endMove(1);
+        currentPlayerId = 1;
+        board.endMove(1);
       }
     }
 
-    return next;
   }
 
-  private Risk initialReinforceDA(RiskAction riskAction) {
+  private void initialReinforceDA(RiskAction riskAction) {
     int reinforcedId = riskAction.reinforcedId();
     int troops = riskAction.troops();
     {
@@ -504,20 +967,17 @@ public class Risk implements Game<RiskAction, RiskBoard> {
         throw new IllegalArgumentException(errorMsg.concat(", could therefore not reinforce"));
       }
     }
-    Risk next = new Risk(this);
-    next.board.reinforce(currentPlayerId, reinforcedId, troops);
+    board.reinforce(currentPlayerId, reinforcedId, troops);
 
-    if (next.isInitialReinforce()) {
+    if (isInitialReinforce()) {
       do {
-        next.currentPlayerId =
-            (next.currentPlayerId + (getNumberOfPlayers() - 1)) % getNumberOfPlayers();
-      } while (next.board.reinforcementsLeft(next.currentPlayerId) <= 0);
+        currentPlayerId = (currentPlayerId + (getNumberOfPlayers() - 1)) % getNumberOfPlayers();
+      } while (board.reinforcementsLeft(currentPlayerId) <= 0);
     } else {
-      next.currentPlayerId = 1;
-      next.board.endMove(1);
+      currentPlayerId = 1;
+      board.endMove(1);
     }
 
-    return next;
   }
 
   private int nextPlayerId(int player) {
@@ -534,7 +994,7 @@ public class Risk implements Game<RiskAction, RiskBoard> {
     return nextPlayerId(currentPlayerId);
   }
 
-  private Risk tradeInDA(RiskAction riskAction) {
+  private void tradeInDA(RiskAction riskAction) {
 
     Set<Integer> cardIds = riskAction.playedCards();
     if (!board.allowedToTradeIn(currentPlayerId)) {
@@ -548,16 +1008,14 @@ public class Risk implements Game<RiskAction, RiskBoard> {
               Collectors.joining(", ")) + "] cannot be traded in as a set");
     }
 
-    Risk next = new Risk(this);
 
-    next.board.tradeIn(cardIds, next.currentPlayerId);
+    board.tradeIn(cardIds, currentPlayerId);
 
-    next.currentPlayerId = Risk.BONUS_PLAYER;
+    currentPlayerId = Risk.BONUS_PLAYER;
 
-    return next;
   }
 
-  private Risk bonusDA(RiskAction riskAction) {
+  private void bonusDA(RiskAction riskAction) {
     if (!riskAction.isBonus()) {
       throw new IllegalArgumentException("Action does not determine bonus.");
     }
@@ -566,15 +1024,13 @@ public class Risk implements Game<RiskAction, RiskBoard> {
       throw new IllegalArgumentException("Not correct amount of bonus for trade in.");
     }
 
-    Risk next = new Risk(this);
 
-    next.currentPlayerId = next.board.getTradedInId();
-    next.board.awardBonus(riskAction.getBonus(), next.currentPlayerId);
+    currentPlayerId = board.getTradedInId();
+    board.awardBonus(riskAction.getBonus(), currentPlayerId);
 
-    return next;
   }
 
-  private Risk reinforceDA(RiskAction riskAction) {
+  private void reinforceDA(RiskAction riskAction) {
     int reinforcedId = riskAction.reinforcedId();
     int troops = riskAction.troops();
     {
@@ -615,23 +1071,18 @@ public class Risk implements Game<RiskAction, RiskBoard> {
       }
     }
 
-    Risk next = new Risk(this);
 
-    next.board.reinforce(next.currentPlayerId, reinforcedId, troops);
-    if (next.board.reinforcementsLeft(currentPlayerId) == 0) {
-      next.board.endReinforcementPhase();
+    board.reinforce(currentPlayerId, reinforcedId, troops);
+    if (board.reinforcementsLeft(currentPlayerId) == 0) {
+      board.endReinforcementPhase();
     }
-
-    return next;
-
   }
 
-  private Risk attackDA(RiskAction riskAction) {
+  private void attackDA(RiskAction riskAction) {
     int attackingId = riskAction.attackingId();
     int defendingId = riskAction.defendingId();
     int troops = riskAction.troops();
 
-    Risk next = new Risk(this);
     if (!riskAction.isEndPhase()) {
       String errorMsg = "";
       if (!(board.isTerritory(attackingId) && board.isTerritory(defendingId))) {
@@ -663,17 +1114,16 @@ public class Risk implements Game<RiskAction, RiskBoard> {
         throw new IllegalArgumentException(errorMsg.concat(", could therefore not attack"));
       }
 
-      next.currentPlayerId = CASUALTIES_PLAYER;
+      currentPlayerId = CASUALTIES_PLAYER;
 
-      next.board.startAttack(attackingId, defendingId, troops);
+      board.startAttack(attackingId, defendingId, troops);
     } else {
-      next.board.endAttackPhase();
+      board.endAttackPhase();
     }
 
-    return next;
   }
 
-  private Risk casualtiesDA(RiskAction riskAction) {
+  private void casualtiesDA(RiskAction riskAction) {
     int attackerCasualties = riskAction.attackerCasualties();
     int defenderCasualties = riskAction.defenderCasualties();
     {
@@ -687,31 +1137,37 @@ public class Risk implements Game<RiskAction, RiskBoard> {
 
     }
 
-    Risk next = new Risk(this);
-    next.currentPlayerId = next.board.endAttack(attackerCasualties, defenderCasualties);
-    return next;
+    currentPlayerId = board.endAttack(attackerCasualties, defenderCasualties);
   }
 
-  private Risk occupyDA(RiskAction riskAction) {
+  private boolean battleDA(RiskAction riskAction) {
+    int player = currentPlayerId;
+    int attackers = board.getMobileTroops(board.getAttackingId());
+    // all mobile troops fight, not only the ones of the first attack
+    board.startAttack(board.getAttackingId(), board.getDefendingId(), attackers);
+    currentPlayerId = board.endAttack(riskAction.attackerCasualties(),
+        riskAction.defenderCasualties());
+    actionRecords = actionRecords.append(new ActionRecord<>(player, riskAction));
+    return true;
+  }
+
+  private void occupyDA(RiskAction riskAction) {
     if (!(1 <= riskAction.troops() && riskAction.troops() <= board.getMaxOccupy())) {
       throw new IllegalArgumentException(
           riskAction.troops() + " is an illegal number of troops, could therefore not occupy");
     }
 
-    Risk next = new Risk(this);
-    next.board.occupy(riskAction.troops());
+    board.occupy(riskAction.troops());
 
-    return next;
   }
 
-  private Risk fortifyDA(RiskAction riskAction) {
+  private void fortifyDA(RiskAction riskAction) {
     int fortifyingId = riskAction.fortifyingId();
     int fortifiedId = riskAction.fortifiedId();
     int troops = riskAction.troops();
 
-    Risk next = new Risk(this);
     if (riskAction.isEndPhase()) {
-      next.endMove();
+      endMove();
     } else {
       {
         StringBuilder errorMsg = new StringBuilder();
@@ -760,14 +1216,13 @@ public class Risk implements Game<RiskAction, RiskBoard> {
         }
       }
 
-      next.board.fortify(fortifyingId, fortifiedId, troops);
+      board.fortify(fortifyingId, fortifiedId, troops);
 
-      if (next.board.isFortifyOnlyFromSingleTerritory()) {
-        next.endMove();
+      if (board.isFortifyOnlyFromSingleTerritory()) {
+        endMove();
       }
     }
 
-    return next;
   }
 
   private void endMove() {
@@ -785,7 +1240,29 @@ public class Risk implements Game<RiskAction, RiskBoard> {
     if (board.isAttack()) {
       return calculateCasualties();
     } else if (currentPlayerId == BONUS_PLAYER) {
-      return calculateBonus();
+      return calculateBonus(ThreadLocalRandom.current());
+    }
+
+    return null;
+  }
+
+  /**
+   * Determines the outcome of the current chance node like determineNextAction(), but rolls the
+   * dice and draws the cards with the given source of randomness, so that a seeded random number
+   * generator reproduces the outcomes.
+   *
+   * @param random the source of randomness
+   * @return the outcome or null if no chance node is to be determined
+   */
+  public RiskAction determineNextAction(Random random) {
+    if (currentPlayerId >= 0) {
+      return null;
+    }
+
+    if (board.isAttack()) {
+      return calculateCasualties(random);
+    } else if (currentPlayerId == BONUS_PLAYER) {
+      return calculateBonus(random);
     }
 
     return null;
@@ -796,6 +1273,10 @@ public class Risk implements Game<RiskAction, RiskBoard> {
     int defender = board.getNrOfDefenderDice();
 
     int compareDice = Math.min(attacker, defender);
+    if (attackerDice == null) {
+      attackerDice = new Dice(board.getMaxAttackerDice());
+      defenderDice = new Dice(board.getMaxDefenderDice());
+    }
     attackerDice.rollN(attacker);
     defenderDice.rollN(defender);
 
@@ -816,7 +1297,24 @@ public class Risk implements Game<RiskAction, RiskBoard> {
     return RiskAction.casualties(attacker, defender);
   }
 
-  private RiskAction calculateBonus() {
+  private RiskAction calculateCasualties(Random random) {
+    int attackerDice = board.getNrOfAttackerDice();
+    int defenderDice = board.getNrOfDefenderDice();
+    // one draw from the exact distribution instead of rolling and sorting the dice
+    int attacker = getBattleTable().sampleRoundCasualties(attackerDice, defenderDice, random);
+    return RiskAction.casualties(attacker, Math.min(attackerDice, defenderDice) - attacker);
+  }
+
+  /**
+   * Returns the outcome probabilities of battles with the dice of this game.
+   *
+   * @return the shared battle table of the dice of this game
+   */
+  public BattleTable getBattleTable() {
+    return BattleTable.of(board.getMaxAttackerDice(), board.getMaxDefenderDice());
+  }
+
+  private RiskAction calculateBonus(Random random) {
     int min = board.getMinMatchingTerritories();
     int max = board.getMaxMatchingTerritories();
 
@@ -833,7 +1331,7 @@ public class Risk implements Game<RiskAction, RiskBoard> {
 
     List<Integer> pool = IntStream.range(0, nrOfCardsInPool).boxed()
         .collect(Collectors.toCollection(LinkedList::new));
-    Collections.shuffle(pool);
+    Collections.shuffle(pool, random);
 
     for (int i = 0; i < drawn; i++) {
       if (pool.get(i) < drawn) {
@@ -871,12 +1369,11 @@ public class Risk implements Game<RiskAction, RiskBoard> {
   public String toTextRepresentation() {
     //TODO: untangle this mess
     StringBuilder map = new StringBuilder(board.getMap());
-    final Map<Integer, RiskTerritory> territories = board.getTerritories();
 
-    for (Integer i : territories.keySet()) {
+    for (int i : board.getTerritoryIdArray()) {
       String target = "[" + i + "]";
-      int occupantPlayerId = territories.get(i).getOccupantPlayerId();
-      int troops = territories.get(i).getTroops();
+      int occupantPlayerId = board.getTerritoryOccupantId(i);
+      int troops = board.getTerritoryTroops(i);
       String troopsString = String.valueOf(troops);
       if (troops >= 1000) {
         troops /= 1000;
@@ -1,7 +1,6 @@
 package at.ac.tuwien.ifs.sge.game.risk.board;
 
 import java.util.Arrays;
-import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -9,10 +8,23 @@ import java.util.stream.IntStream;
 public class RiskAction {
 
   private static final RiskAction END_PHASE = new RiskAction(-2, -4, -8);
-  private static final int CASUALTIES_ID = -1;
-  private static final int OCCUPY_ID = -2;
-  private static final int CARD_ID = -3;
-  private static final int BONUS_ID = -4;
+  static final int NO_ID = -1;
+  static final int CASUALTIES_ID = -1;
+  static final int OCCUPY_ID = -2;
+  static final int CARD_ID = -3;
+  static final int BONUS_ID = -4;
+  static final long ENCODED_END_PHASE = END_PHASE.encode();
+
+  private static final int CACHED_IDS = 64;
+  private static final int CACHED_VALUES = 32;
+  private static final int CACHED_CASUALTIES = 4;
+  private static final RiskAction[] TERRITORY_ACTIONS =
+      new RiskAction[CACHED_IDS * CACHED_IDS * CACHED_VALUES];
+  private static final RiskAction[] TARGET_ACTIONS = new RiskAction[CACHED_IDS * CACHED_VALUES];
+  private static final RiskAction[] CASUALTIES_ACTIONS =
+      new RiskAction[CACHED_CASUALTIES * CACHED_CASUALTIES];
+  private static final RiskAction[] PHASE_ACTIONS =
+      new RiskAction[(OCCUPY_ID - BONUS_ID + 1) * CACHED_VALUES];
 
   private final int srcId;
   private final int targetId;
@@ -24,16 +36,45 @@ public class RiskAction {
     this.value = value;
   }
 
-  private RiskAction(int targetId, int value) {
-    this.srcId = -1;
-    this.targetId = targetId;
-    this.value = value;
+  /**
+   * Returns the action with the given components. Actions between territories with small ids and
+   * values are interned, as search trees and action sets otherwise hold many equal copies of them.
+   * The caches are filled lazily, racing threads at worst create a duplicate of an equal action.
+   */
+  private static RiskAction of(int srcId, int targetId, int value) {
+    if (0 <= targetId && targetId < CACHED_IDS && 0 <= value && value < CACHED_VALUES) {
+      if (srcId == NO_ID) {
+        return cached(TARGET_ACTIONS, targetId * CACHED_VALUES + value, srcId, targetId, value);
+      } else if (0 <= srcId && srcId < CACHED_IDS) {
+        return cached(TERRITORY_ACTIONS, (srcId * CACHED_IDS + targetId) * CACHED_VALUES + value,
+            srcId, targetId, value);
+      }
+    } else if (srcId == targetId && srcId == CASUALTIES_ID) {
+      int attacker = value & (~0 >>> (Integer.SIZE / 2));
+      int defender = value >>> (Integer.SIZE / 2);
+      if (attacker < CACHED_CASUALTIES && defender < CACHED_CASUALTIES) {
+        return cached(CASUALTIES_ACTIONS, attacker * CACHED_CASUALTIES + defender, srcId,
+            targetId, value);
+      }
+    } else if (srcId == targetId && BONUS_ID <= srcId && srcId <= OCCUPY_ID
+        && 0 <= value && value < CACHED_VALUES) {
+      return cached(PHASE_ACTIONS, (OCCUPY_ID - srcId) * CACHED_VALUES + value, srcId, targetId,
+          value);
+    } else if (srcId == END_PHASE.srcId && targetId == END_PHASE.targetId
+        && value == END_PHASE.value) {
+      return END_PHASE;
+    }
+    return new RiskAction(srcId, targetId, value);
   }
 
-  private RiskAction(int value) {
-    this.srcId = -1;
-    this.targetId = -1;
-    this.value = value;
+  private static RiskAction cached(RiskAction[] cache, int index, int srcId, int targetId,
+      int value) {
+    RiskAction action = cache[index];
+    if (action == null) {
+      action = new RiskAction(srcId, targetId, value);
+      cache[index] = action;
+    }
+    return action;
   }
 
   /**
@@ -43,7 +84,7 @@ public class RiskAction {
    * @return an action modelling the selection of a territory
    */
   public static RiskAction select(int id) {
-    return new RiskAction(id, 1);
+    return of(NO_ID, id, 1);
   }
 
   /**
@@ -55,7 +96,7 @@ public class RiskAction {
    * @return an action modelling the reinforcement of a territory with a number of troops
    */
   public static RiskAction reinforce(int id, int troops) {
-    return new RiskAction(id, troops);
+    return of(NO_ID, id, troops);
   }
 
   /**
@@ -69,7 +110,7 @@ public class RiskAction {
    * troops
    */
   public static RiskAction attack(int attackingId, int defendingId, int troops) {
-    return new RiskAction(attackingId, defendingId, troops);
+    return of(attackingId, defendingId, troops);
   }
 
   /**
@@ -80,7 +121,7 @@ public class RiskAction {
    * @return an action modelling using a number of troops to occupy a just captured territory
    */
   public static RiskAction occupy(int troops) {
-    return new RiskAction(OCCUPY_ID, OCCUPY_ID, troops);
+    return of(OCCUPY_ID, OCCUPY_ID, troops);
   }
 
   /**
@@ -94,7 +135,7 @@ public class RiskAction {
    * another territory
    */
   public static RiskAction fortify(int fortifyingId, int fortifiedId, int troops) {
-    return new RiskAction(fortifyingId, fortifiedId, troops);
+    return of(fortifyingId, fortifiedId, troops);
   }
 
   /**
@@ -114,8 +155,11 @@ public class RiskAction {
    * @return an action modelling the casualties of each player
    */
   public static RiskAction casualties(int attacker, int defender) {
-    return new RiskAction(CASUALTIES_ID, CASUALTIES_ID,
-        attacker | (defender << (Integer.SIZE / 2)));
+    return of(CASUALTIES_ID, CASUALTIES_ID, casualtiesValue(attacker, defender));
+  }
+
+  static int casualtiesValue(int attacker, int defender) {
+    return attacker | (defender << (Integer.SIZE / 2));
   }
 
   /**
@@ -129,7 +173,7 @@ public class RiskAction {
    * @return an action modelling the trade in of the cards in the specified card slots
    */
   public static RiskAction cardSlots(int id) {
-    return new RiskAction(CARD_ID, CARD_ID, id);
+    return of(CARD_ID, CARD_ID, id);
   }
 
   /**
@@ -140,7 +184,7 @@ public class RiskAction {
    * @return an action modelling the trade in of the cards in the specified card slots
    */
   public static RiskAction playCards(int... ids) {
-    return new RiskAction(CARD_ID, CARD_ID, idsToSlotIds(ids));
+    return of(CARD_ID, CARD_ID, idsToSlotIds(ids));
   }
 
   /**
@@ -151,7 +195,7 @@ public class RiskAction {
    * @return an action modelling the trade in of the cards in the specified card slots
    */
   public static RiskAction playCards(Iterable<Integer> ids) {
-    return new RiskAction(CARD_ID, CARD_ID, idsToSlotIds(ids));
+    return of(CARD_ID, CARD_ID, idsToSlotIds(ids));
   }
 
   /**
@@ -162,7 +206,41 @@ public class RiskAction {
    * @return an action modelling the award of a number of troops after trade in
    */
   public static RiskAction bonusTroopsFromCards(int nr) {
-    return new RiskAction(BONUS_ID, BONUS_ID, nr);
+    return of(BONUS_ID, BONUS_ID, nr);
+  }
+
+  /**
+   * Packs an action into a single long. The source and target ids take up 16 bits each and are
+   * therefore limited to the range of a short, the value takes up the lower 32 bits.
+   *
+   * @param srcId - the id of the source, e.g. the attacking territory
+   * @param targetId - the id of the target, e.g. the defending territory
+   * @param value - the value, e.g. the number of troops
+   * @return the encoded action
+   */
+  public static long encode(int srcId, int targetId, int value) {
+    return ((long) (srcId & 0xFFFF) << 48) | ((long) (targetId & 0xFFFF) << 32)
+        | (value & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Reverses encode(). Every action created by one of the factory methods survives the round trip
+   * unchanged and, like the factory methods, small actions are returned as shared instances.
+   *
+   * @param action - the encoded action
+   * @return the decoded action
+   */
+  public static RiskAction decode(long action) {
+    return of((short) (action >>> 48), (short) (action >>> 32), (int) action);
+  }
+
+  /**
+   * Returns this action packed into a long, see RiskAction.encode(int, int, int).
+   *
+   * @return the encoded action
+   */
+  public long encode() {
+    return encode(srcId, targetId, value);
   }
 
   /**
@@ -318,7 +396,7 @@ public class RiskAction {
 
   @Override
   public int hashCode() {
-    return Objects.hash(srcId, targetId, value);
+    return 31 * (31 * (31 + srcId) + targetId) + value;
   }
 
   @Override
@@ -415,7 +493,7 @@ public class RiskAction {
   }
 
 
-  private static int idsToSlotIds(Iterable<Integer> ids) {
+  static int idsToSlotIds(Iterable<Integer> ids) {
     int value = 0;
     for (int id : ids) {
       value |= (1 << id);
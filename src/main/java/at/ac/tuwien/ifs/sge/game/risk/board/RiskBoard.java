@@ -30,8 +30,6 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import org.jgrapht.Graph;
 import org.jgrapht.Graphs;
-import org.jgrapht.alg.connectivity.ConnectivityInspector;
-import org.jgrapht.event.GraphEdgeChangeEvent;
 import org.jgrapht.graph.DefaultEdge;
 import org.jgrapht.graph.SimpleGraph;
 
@@ -62,6 +60,41 @@ public class RiskBoard {
       ImmutableMultiset.of(-1, -1, 3),
       ImmutableMultiset.of(-1, -1, 0));
 
+  private static final int NO_TERRITORY = Integer.MIN_VALUE;
+
+  private static final int TERRITORY_OCCUPANTS = 1;
+  private static final int TERRITORY_TROOPS = 1 << 1;
+  private static final int DECK_OF_CARDS = 1 << 2;
+  private static final int DISCARD_PILE = 1 << 3;
+  private static final int PLAYER_CARDS = 1 << 4;
+  private static final int NON_DEPLOYED_REINFORCEMENTS = 1 << 5;
+  private static final int REINFORCED_TERRITORIES = 1 << 6;
+  private static final int INVOLVED_TROOPS_IN_ATTACKS = 1 << 7;
+  private static final int TRADE_IN_TERRITORIES = 1 << 8;
+  private static final int FORTIFY_COMPONENTS = 1 << 9;
+  private static final int ALL_COMPONENTS = (1 << 10) - 1;
+  private static final int TERRITORY_ARRAYS =
+      TERRITORY_OCCUPANTS | TERRITORY_TROOPS | NON_DEPLOYED_REINFORCEMENTS;
+
+  private static final int PLAYER_KEY = 0;
+  private static final int OCCUPANT_KEY = 1;
+  private static final int TROOPS_KEY = 2;
+  private static final int REINFORCEMENTS_KEY = 3;
+  private static final int PHASE_KEY = 4;
+  private static final int ATTACK_KEY = 5;
+  private static final int TRADE_IN_KEY = 6;
+  private static final int CARD_KEY = 7;
+  private static final int REINFORCED_KEY = 8;
+  private static final int INVOLVED_TROOPS_KEY = 9;
+  private static final int TRADE_IN_TERRITORY_KEY = 10;
+  private static final int MATCHING_KEY = 11;
+  private static final int INITIAL_KEY = 12;
+  private static final int ATTACK_TROOPS_KEY = 13;
+
+  private static final int OCCUPANT_ENTRY = 0;
+  private static final int TROOPS_ENTRY = 1;
+  private static final int REINFORCEMENTS_ENTRY = 2;
+
   //settings
   private final int numberOfPlayers;
   private final int maxAttackerDice;
@@ -80,18 +113,49 @@ public class RiskBoard {
   private final boolean withMissions;
   //board
   private final Graph<Integer, DefaultEdge> gameBoard;
-  private final Map<Integer, RiskTerritory> territories;
-  private final Map<Integer, Graph<Integer, DefaultEdge>> fortifyConnectivityGraph;
-  private final Map<Integer, ConnectivityInspector<Integer, DefaultEdge>> fortifyConnectivityInspector;
-  private final Deque<RiskCard> deckOfCards;
-  private final List<RiskCard> discardPile;
+  private final int[][] neighborIds;
+  private final long[][] neighborMasks;
+  private final List<Set<Integer>> neighborSets;
+  private final Set<Integer> territoryIds;
+  private final int[] territoryIdArray;
+  private final int[] territoryContinentIds;
+  private int[] territoryOccupantIds;
+  private int[] territoryTroops;
+  /**
+   * One bitset of territory ids per occupant, index 0 holds the unoccupied territories and index
+   * playerId + 1 the territories of that player. Belongs to the TERRITORY_OCCUPANTS component.
+   */
+  private long[][] occupantMasks;
+  /**
+   * Union-find forest over the territories which links neighboring territories of the same player.
+   * Null if it has to be rebuilt before the next fortify query.
+   */
+  private int[] fortifyComponents;
+  private Deque<RiskCard> deckOfCards;
+  private List<RiskCard> discardPile;
   private final Set<RiskMission> allMissions;
   private final RiskMission[] playerMissions;
-  private final Map<Integer, List<RiskCard>> playerCards;
+  private Map<Integer, List<RiskCard>> playerCards;
   private final Map<Integer, RiskContinent> continents;
-  private final int[] nonDeployedReinforcements;
-  private final Set<Integer> reinforcedTerritories;
-  private final Map<Integer, Integer> involvedTroopsInAttacks;
+  private final int[] continentIdArray;
+  private final int[] territoryContinentIndices;
+  private final int[] continentSizes;
+  /**
+   * Number of territories per occupant, in total and per continent. The counts of an occupant
+   * start at (occupant + 1) * (continentIdArray.length + 1), the total comes first and is followed
+   * by the counts per continent in the order of continentIdArray. Belongs to the
+   * TERRITORY_OCCUPANTS component.
+   */
+  private int[] occupantCounts;
+  private int livingPlayers;
+  private int[] nonDeployedReinforcements;
+  /**
+   * Zobrist key of the occupants, troops and non deployed reinforcements. Maintained by the put
+   * methods, which also replay rollbacks, so it never has to be saved.
+   */
+  private long territoryKey;
+  private Set<Integer> reinforcedTerritories;
+  private Map<Integer, Integer> involvedTroopsInAttacks;
   private final String map;
   private Set<Integer> tradeInTerritories;
   private int minMatchingTerritories;
@@ -107,6 +171,23 @@ public class RiskBoard {
   private boolean initialSelectMaybe;
   private boolean initialReinforceMaybe;
 
+  /**
+   * Bitmask of the mutable components which are still shared with another board. Copies of a board
+   * share all of its mutable state until one of them writes to a component, at which point the
+   * writer clones that component for itself (see the mutable* accessors).
+   */
+  private int sharedComponents;
+
+  /**
+   * Undo log of the in-place mode. Writes to the occupant, troop and reinforcement arrays are
+   * journaled as (index and kind, old value) pairs while a savepoint exists, everything else is
+   * restored from the savepoint itself.
+   */
+  private int[] journal;
+  private int journalSize;
+  private Savepoint[] savepoints;
+  private int savepointDepth;
+
   RiskBoard(RiskConfiguration configuration, int numberOfPlayers) {
     this.numberOfPlayers = numberOfPlayers;
     maxAttackerDice = configuration.getMaxAttackerDice();
@@ -138,37 +219,66 @@ public class RiskBoard {
     Set<RiskTerritoryConfiguration> territoriesConfiguration = new HashSet<>(
         configuration.getTerritories());
 
-    Map<Integer, RiskTerritory> territoryMap = new HashMap<>();
-
+    int maxTerritoryId = -1;
     for (RiskTerritoryConfiguration riskTerritoryConfiguration : territoriesConfiguration) {
-      territoryMap.put(riskTerritoryConfiguration.getTerritoryId(),
-          riskTerritoryConfiguration.getTerritory());
+      if (riskTerritoryConfiguration.getTerritoryId() < 0
+          || riskTerritoryConfiguration.getTerritoryId() > Short.MAX_VALUE) {
+        throw new IllegalArgumentException(
+            riskTerritoryConfiguration.getTerritoryId() + " is an illegal territoryId");
+      }
+      maxTerritoryId = Math.max(maxTerritoryId, riskTerritoryConfiguration.getTerritoryId());
     }
 
-    territories = Map.copyOf(territoryMap);
+    territoryContinentIds = new int[maxTerritoryId + 1];
+    territoryOccupantIds = new int[maxTerritoryId + 1];
+    territoryTroops = new int[maxTerritoryId + 1];
+    Arrays.fill(territoryContinentIds, NO_TERRITORY);
+    Arrays.fill(territoryOccupantIds, -1);
 
-    gameBoard = new SimpleGraph<>(DefaultEdge.class);
-    if (fortifyOnlyFromSingleTerritory) {
-      fortifyConnectivityGraph = null;
-    } else {
-      fortifyConnectivityGraph = new HashMap<>();
-      for (int p = 0; p < numberOfPlayers; p++) {
-        fortifyConnectivityGraph.put(p, new SimpleGraph<>(DefaultEdge.class));
+    for (RiskTerritoryConfiguration riskTerritoryConfiguration : territoriesConfiguration) {
+      int territoryId = riskTerritoryConfiguration.getTerritoryId();
+      RiskTerritory territory = riskTerritoryConfiguration.getTerritory();
+      territoryContinentIds[territoryId] = territory.getContinentId();
+      territoryOccupantIds[territoryId] = territory.getOccupantPlayerId();
+      territoryTroops[territoryId] = territory.getTroops();
+      if (!(-1 <= territory.getOccupantPlayerId()
+          && territory.getOccupantPlayerId() < numberOfPlayers)) {
+        throw new IllegalArgumentException(
+            "Illegal occupant found: " + riskTerritoryConfiguration.toString());
       }
     }
+
+    territoryIds = territoriesConfiguration.stream()
+        .map(RiskTerritoryConfiguration::getTerritoryId).collect(Collectors.toUnmodifiableSet());
+    territoryIdArray = territoryIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+
+    gameBoard = new SimpleGraph<>(DefaultEdge.class);
     for (RiskTerritoryConfiguration territoryConfiguration : territoriesConfiguration) {
       gameBoard.addVertex(territoryConfiguration.getTerritoryId());
-      if (!fortifyOnlyFromSingleTerritory) {
-        for (int p = 0; p < numberOfPlayers; p++) {
-          fortifyConnectivityGraph.get(p).addVertex(territoryConfiguration.getTerritoryId());
-        }
-      }
     }
     for (RiskTerritoryConfiguration territoryConfiguration : territoriesConfiguration) {
       for (Integer connect : territoryConfiguration.getConnects()) {
         gameBoard.addEdge(territoryConfiguration.getTerritoryId(), connect);
       }
     }
+    int words = (maxTerritoryId >>> 6) + 1;
+    neighborIds = new int[maxTerritoryId + 1][];
+    neighborMasks = new long[maxTerritoryId + 1][words];
+    neighborSets = new ArrayList<>(Collections.nCopies(maxTerritoryId + 1, Set.of()));
+    Arrays.fill(neighborIds, new int[0]);
+    for (int territoryId : territoryIdArray) {
+      neighborIds[territoryId] = Graphs.neighborSetOf(gameBoard, territoryId).stream()
+          .mapToInt(Integer::intValue).sorted().toArray();
+      for (int neighborId : neighborIds[territoryId]) {
+        neighborMasks[territoryId][neighborId >>> 6] |= 1L << neighborId;
+      }
+      neighborSets.set(territoryId, Collections.unmodifiableSet(
+          Graphs.neighborSetOf(gameBoard, territoryId)));
+    }
+    occupantMasks = new long[numberOfPlayers + 1][words];
+    for (int territoryId : territoryIdArray) {
+      occupantMasks[territoryOccupantIds[territoryId] + 1][territoryId >>> 6] |= 1L << territoryId;
+    }
 
     tradeIns = 0;
     if (withCards) {
@@ -193,11 +303,11 @@ public class RiskBoard {
       }
       Collections.shuffle(cardList);
       deckOfCards = new ArrayDeque<>(cardList);
-      discardPile = Collections.emptyList();
+      discardPile = new ArrayList<>();
       playerCards = IntStream.range(0, numberOfPlayers).boxed().collect(Collectors
-          .toUnmodifiableMap(p -> p, p -> new ArrayList<>(cardSlots())));
+          .toMap(p -> p, p -> new ArrayList<>(cardSlots())));
 
-      tradeInTerritories = Collections.emptySet();
+      tradeInTerritories = new HashSet<>();
     } else {
       tradeInBonus = null;
       maxExtraBonus = 0;
@@ -214,15 +324,41 @@ public class RiskBoard {
         .toUnmodifiableMap(RiskContinentConfiguration::getContinentId,
             RiskContinentConfiguration::getContinent, (a, b) -> b));
 
+    continentIdArray = IntStream.concat(continents.keySet().stream().mapToInt(Integer::intValue),
+        Arrays.stream(territoryIdArray).map(territoryId -> territoryContinentIds[territoryId]))
+        .distinct().sorted().toArray();
+    territoryContinentIndices = new int[maxTerritoryId + 1];
+    continentSizes = new int[continentIdArray.length];
+    occupantCounts = new int[(numberOfPlayers + 1) * (continentIdArray.length + 1)];
+    for (int territoryId : territoryIdArray) {
+      int continentIndex = Arrays
+          .binarySearch(continentIdArray, territoryContinentIds[territoryId]);
+      territoryContinentIndices[territoryId] = continentIndex;
+      continentSizes[continentIndex]++;
+      occupantCounts[occupantCountIndex(territoryOccupantIds[territoryId], -1)]++;
+      occupantCounts[occupantCountIndex(territoryOccupantIds[territoryId], continentIndex)]++;
+    }
+    livingPlayers = (int) IntStream.range(0, numberOfPlayers)
+        .filter(p -> occupantCounts[occupantCountIndex(p, -1)] > 0).count();
+
     nonDeployedReinforcements = new int[numberOfPlayers];
     int[] initialTroops = configuration.getInitialTroops();
     Arrays.fill(nonDeployedReinforcements,
         initialTroops[Math.max(0, Math.min(numberOfPlayers - 2, initialTroops.length - 1))]);
 
-    reinforcedTerritories = Collections.emptySet();
+    territoryKey = 0;
+    for (int territoryId : territoryIdArray) {
+      territoryKey ^= zobrist(OCCUPANT_KEY, territoryId, territoryOccupantIds[territoryId])
+          ^ zobrist(TROOPS_KEY, territoryId, territoryTroops[territoryId]);
+    }
+    for (int p = 0; p < numberOfPlayers; p++) {
+      territoryKey ^= zobrist(REINFORCEMENTS_KEY, p, nonDeployedReinforcements[p]);
+    }
+
+    reinforcedTerritories = new HashSet<>();
 
     if (!configuration.isChooseInitialTerritories()) {
-      List<Integer> ids = new ArrayList<>(territories.keySet());
+      List<Integer> ids = new ArrayList<>(territoryIds);
       Collections.shuffle(ids);
       int p;
       {
@@ -230,36 +366,14 @@ public class RiskBoard {
         for (p = numberOfPlayers - 1, i = 0;
             i < ids.size();
             i++, p = (p + (numberOfPlayers - 1)) % numberOfPlayers) {
-          RiskTerritory territory = territories.get(ids.get(i));
-          territory.setOccupantPlayerId(p);
-          territory.setTroops(1);
-          nonDeployedReinforcements[p]--;
-        }
-      }
-
-      if (!fortifyOnlyFromSingleTerritory) {
-        for (DefaultEdge edge : gameBoard.edgeSet()) {
-          int src = gameBoard.getEdgeSource(edge);
-          int dst = gameBoard.getEdgeTarget(edge);
-          int occupant;
-          if ((occupant = getTerritoryOccupantId(src)) == getTerritoryOccupantId(dst)) {
-            fortifyConnectivityGraph.get(occupant).addEdge(src, dst);
-          }
+          setTerritoryOccupantId(ids.get(i), p);
+          setTerritoryTroops(ids.get(i), 1);
+          addNonDeployedReinforcements(p, -1);
         }
       }
     }
 
-    if (fortifyOnlyFromSingleTerritory) {
-      fortifyConnectivityInspector = null;
-    } else {
-      fortifyConnectivityInspector = new HashMap<>();
-
-      for (int p = 0; p < numberOfPlayers; p++) {
-        fortifyConnectivityInspector
-            .put(p, new ConnectivityInspector<>(fortifyConnectivityGraph.get(p)));
-      }
-    }
-
+    fortifyComponents = null;
     involvedTroopsInAttacks = new HashMap<>();
 
     attackingId = -1;
@@ -277,6 +391,7 @@ public class RiskBoard {
     maxMatchingTerritories = 0;
 
     map = configuration.getMap();
+    sharedComponents = 0;
   }
 
   RiskBoard(RiskBoard riskBoard) {
@@ -285,16 +400,27 @@ public class RiskBoard {
         riskBoard.cardTypesWithoutJoker, riskBoard.reinforcementAtLeast,
         riskBoard.reinforcementThreshold, riskBoard.occupyOnlyWithAttackingArmies,
         riskBoard.fortifyOnlyFromSingleTerritory, riskBoard.fortifyOnlyWithNonFightingArmies,
-        riskBoard.withMissions, riskBoard.gameBoard, riskBoard.territories,
-        riskBoard.fortifyConnectivityGraph, riskBoard.fortifyConnectivityInspector,
+        riskBoard.withMissions, riskBoard.gameBoard, riskBoard.neighborIds,
+        riskBoard.neighborMasks, riskBoard.neighborSets, riskBoard.territoryIds,
+        riskBoard.territoryIdArray, riskBoard.territoryContinentIds,
+        riskBoard.territoryOccupantIds, riskBoard.occupantMasks, riskBoard.territoryTroops,
+        riskBoard.fortifyComponents,
         riskBoard.deckOfCards, riskBoard.discardPile, riskBoard.allMissions,
         riskBoard.playerMissions, riskBoard.playerCards, riskBoard.continents,
-        riskBoard.nonDeployedReinforcements, riskBoard.reinforcedTerritories,
+        riskBoard.continentIdArray, riskBoard.territoryContinentIndices, riskBoard.continentSizes,
+        riskBoard.occupantCounts, riskBoard.livingPlayers,
+        riskBoard.nonDeployedReinforcements, riskBoard.territoryKey,
+        riskBoard.reinforcedTerritories,
         riskBoard.involvedTroopsInAttacks, riskBoard.attackingId, riskBoard.defendingId,
         riskBoard.troops, riskBoard.hasOccupiedCountry, riskBoard.phase,
         riskBoard.initialSelectMaybe, riskBoard.initialReinforceMaybe, riskBoard.tradedInId,
         riskBoard.tradeInTerritories, riskBoard.minMatchingTerritories,
         riskBoard.maxMatchingTerritories, riskBoard.map);
+    riskBoard.sharedComponents = ALL_COMPONENTS;
+    // rolling back must not make the references held by the copy writable again
+    for (int i = 0; i < riskBoard.savepointDepth; i++) {
+      riskBoard.savepoints[i].sharedComponents = ALL_COMPONENTS;
+    }
   }
 
   private RiskBoard(int numberOfPlayers, int maxAttackerDice, int maxDefenderDice,
@@ -303,15 +429,20 @@ public class RiskBoard {
       int reinforcementThreshold, boolean occupyOnlyWithAttackingArmies,
       boolean fortifyOnlyFromSingleTerritory, boolean fortifyOnlyWithNonFightingArmies,
       boolean withMissions,
-      Graph<Integer, DefaultEdge> gameBoard, Map<Integer, RiskTerritory> territories,
-      Map<Integer, Graph<Integer, DefaultEdge>> fortifyConnectivityGraph,
-      Map<Integer, ConnectivityInspector<Integer, DefaultEdge>> fortifyConnectivityInspector,
-      Collection<RiskCard> deckOfCards, Collection<RiskCard> discardPile,
+      Graph<Integer, DefaultEdge> gameBoard, int[][] neighborIds, long[][] neighborMasks,
+      List<Set<Integer>> neighborSets, Set<Integer> territoryIds, int[] territoryIdArray,
+      int[] territoryContinentIds, int[] territoryOccupantIds, long[][] occupantMasks,
+      int[] territoryTroops,
+      int[] fortifyComponents,
+      Deque<RiskCard> deckOfCards, List<RiskCard> discardPile,
       Set<RiskMission> allMissions,
       RiskMission[] playerMissions,
       Map<Integer, List<RiskCard>> playerCards,
-      Map<Integer, RiskContinent> continents, int[] nonDeployedReinforcements,
-      Collection<Integer> reinforcedTerritories,
+      Map<Integer, RiskContinent> continents, int[] continentIdArray,
+      int[] territoryContinentIndices, int[] continentSizes, int[] occupantCounts,
+      int livingPlayers,
+      int[] nonDeployedReinforcements, long territoryKey,
+      Set<Integer> reinforcedTerritories,
       Map<Integer, Integer> involvedTroopsInAttacks, int attackingId,
       int defendingId, int troops, boolean hasOccupiedCountry, RiskPhase phase,
       boolean initialSelectMaybe, boolean initialReinforceMaybe, int tradedInId,
@@ -332,58 +463,31 @@ public class RiskBoard {
     this.fortifyOnlyWithNonFightingArmies = fortifyOnlyWithNonFightingArmies;
     this.withMissions = withMissions;
     this.gameBoard = gameBoard;
-    this.territories = Collections.unmodifiableMap(copyTerritories(territories));
-    if (fortifyOnlyFromSingleTerritory) {
-      this.fortifyConnectivityGraph = fortifyConnectivityGraph;
-      this.fortifyConnectivityInspector = fortifyConnectivityInspector;
-    } else {
-      this.fortifyConnectivityGraph = new HashMap<>(fortifyConnectivityGraph.size() + 1, 1.00f);
-      for (int p = 0; p < numberOfPlayers; p++) {
-        this.fortifyConnectivityGraph.put(p, new SimpleGraph<>(DefaultEdge.class));
-      }
-      for (Integer vertex : gameBoard.vertexSet()) {
-        for (int p = 0; p < numberOfPlayers; p++) {
-          this.fortifyConnectivityGraph.get(p).addVertex(vertex);
-        }
-      }
-      for (DefaultEdge edge : this.gameBoard.edgeSet()) {
-        int src = this.gameBoard.getEdgeSource(edge);
-        int dst = this.gameBoard.getEdgeTarget(edge);
-        int occupant;
-        if ((occupant = getTerritoryOccupantId(src)) == getTerritoryOccupantId(dst)) {
-          if (occupant < 0) {
-            break;
-          }
-          this.fortifyConnectivityGraph.get(occupant).addEdge(src, dst);
-        }
-      }
-
-      this.fortifyConnectivityInspector = new HashMap<>(this.fortifyConnectivityGraph.size() + 1,
-          1.00f);
-      for (Entry<Integer, Graph<Integer, DefaultEdge>> entry : fortifyConnectivityGraph
-          .entrySet()) {
-        this.fortifyConnectivityInspector
-            .put(entry.getKey(), new ConnectivityInspector<>(entry.getValue()));
-      }
-
-    }
-
-    this.deckOfCards = deckOfCards != null ? new ArrayDeque<>(deckOfCards) : null;
-    this.discardPile = discardPile != null ? new ArrayList<>(discardPile) : null;
+    this.neighborIds = neighborIds;
+    this.neighborMasks = neighborMasks;
+    this.neighborSets = neighborSets;
+    this.territoryIds = territoryIds;
+    this.territoryIdArray = territoryIdArray;
+    this.territoryContinentIds = territoryContinentIds;
+    this.territoryOccupantIds = territoryOccupantIds;
+    this.occupantMasks = occupantMasks;
+    this.territoryTroops = territoryTroops;
+    this.fortifyComponents = fortifyComponents;
+    this.deckOfCards = deckOfCards;
+    this.discardPile = discardPile;
     this.allMissions = allMissions;
-    this.playerMissions = playerMissions != null ? playerMissions.clone() : null;
-    if (playerCards == null) {
-      this.playerCards = null;
-    } else {
-      this.playerCards = new HashMap<>(1 + (int) (0.75f * playerCards.size()), 0.75f);
-      for (Entry<Integer, List<RiskCard>> entry : playerCards.entrySet()) {
-        this.playerCards.put(entry.getKey(), new ArrayList<>(entry.getValue()));
-      }
-    }
+    this.playerMissions = playerMissions;
+    this.playerCards = playerCards;
     this.continents = continents;
-    this.nonDeployedReinforcements = nonDeployedReinforcements.clone();
-    this.reinforcedTerritories = new HashSet<>(reinforcedTerritories);
-    this.involvedTroopsInAttacks = new HashMap<>(involvedTroopsInAttacks);
+    this.continentIdArray = continentIdArray;
+    this.territoryContinentIndices = territoryContinentIndices;
+    this.continentSizes = continentSizes;
+    this.occupantCounts = occupantCounts;
+    this.livingPlayers = livingPlayers;
+    this.nonDeployedReinforcements = nonDeployedReinforcements;
+    this.territoryKey = territoryKey;
+    this.reinforcedTerritories = reinforcedTerritories;
+    this.involvedTroopsInAttacks = involvedTroopsInAttacks;
     this.attackingId = attackingId;
     this.defendingId = defendingId;
     this.troops = troops;
@@ -392,18 +496,316 @@ public class RiskBoard {
     this.initialSelectMaybe = initialSelectMaybe;
     this.initialReinforceMaybe = initialReinforceMaybe;
     this.tradedInId = tradedInId;
-    this.tradeInTerritories = tradeInTerritories != null ? new HashSet<>(tradeInTerritories) : null;
+    this.tradeInTerritories = tradeInTerritories;
     this.minMatchingTerritories = Math
         .max(0, Math.min(minMatchingTerritories, cardTypesWithoutJoker));
     this.maxMatchingTerritories = Math
         .max(this.minMatchingTerritories, Math.min(maxMatchingTerritories, cardTypesWithoutJoker));
     this.map = map;
+    this.sharedComponents = ALL_COMPONENTS;
+  }
+
+  private boolean isShared(int component) {
+    if ((sharedComponents & component) != 0) {
+      sharedComponents &= ~component;
+      return true;
+    }
+    return false;
+  }
+
+  private int[] mutableTerritoryOccupantIds() {
+    if (isShared(TERRITORY_OCCUPANTS)) {
+      territoryOccupantIds = territoryOccupantIds.clone();
+      long[][] occupantMasks = new long[this.occupantMasks.length][];
+      for (int i = 0; i < occupantMasks.length; i++) {
+        occupantMasks[i] = this.occupantMasks[i].clone();
+      }
+      this.occupantMasks = occupantMasks;
+      occupantCounts = occupantCounts.clone();
+    }
+    return territoryOccupantIds;
+  }
+
+  private int[] mutableTerritoryTroops() {
+    if (isShared(TERRITORY_TROOPS)) {
+      territoryTroops = territoryTroops.clone();
+    }
+    return territoryTroops;
+  }
+
+  private Deque<RiskCard> mutableDeckOfCards() {
+    if (isShared(DECK_OF_CARDS)) {
+      deckOfCards = new ArrayDeque<>(deckOfCards);
+    }
+    return deckOfCards;
+  }
+
+  private List<RiskCard> mutableDiscardPile() {
+    if (isShared(DISCARD_PILE)) {
+      discardPile = new ArrayList<>(discardPile);
+    }
+    return discardPile;
+  }
+
+  private Map<Integer, List<RiskCard>> mutablePlayerCards() {
+    if (isShared(PLAYER_CARDS)) {
+      Map<Integer, List<RiskCard>> playerCards = new HashMap<>(
+          1 + (int) (this.playerCards.size() / 0.75f), 0.75f);
+      for (Entry<Integer, List<RiskCard>> entry : this.playerCards.entrySet()) {
+        playerCards.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+      }
+      this.playerCards = playerCards;
+    }
+    return playerCards;
+  }
+
+  private int[] mutableNonDeployedReinforcements() {
+    if (isShared(NON_DEPLOYED_REINFORCEMENTS)) {
+      nonDeployedReinforcements = nonDeployedReinforcements.clone();
+    }
+    return nonDeployedReinforcements;
+  }
+
+  private Set<Integer> mutableReinforcedTerritories() {
+    if (isShared(REINFORCED_TERRITORIES)) {
+      reinforcedTerritories = new HashSet<>(reinforcedTerritories);
+    }
+    return reinforcedTerritories;
+  }
+
+  private void clearReinforcedTerritories() {
+    if (!reinforcedTerritories.isEmpty()) {
+      if (isShared(REINFORCED_TERRITORIES)) {
+        reinforcedTerritories = new HashSet<>();
+      } else {
+        reinforcedTerritories.clear();
+      }
+    }
+  }
+
+  private Map<Integer, Integer> mutableInvolvedTroopsInAttacks() {
+    if (isShared(INVOLVED_TROOPS_IN_ATTACKS)) {
+      involvedTroopsInAttacks = new HashMap<>(involvedTroopsInAttacks);
+    }
+    return involvedTroopsInAttacks;
+  }
+
+  private void clearInvolvedTroopsInAttacks() {
+    if (!involvedTroopsInAttacks.isEmpty()) {
+      if (isShared(INVOLVED_TROOPS_IN_ATTACKS)) {
+        involvedTroopsInAttacks = new HashMap<>();
+      } else {
+        involvedTroopsInAttacks.clear();
+      }
+    }
   }
 
-  private static Map<Integer, RiskTerritory> copyTerritories(
-      Map<Integer, RiskTerritory> territories) {
-    return territories.keySet().stream().collect(Collectors
-        .toMap(i -> i, i -> new RiskTerritory(territories.get(i)), (a, b) -> b));
+  private void clearTradeInTerritories() {
+    if (tradeInTerritories != null && !tradeInTerritories.isEmpty()) {
+      if (isShared(TRADE_IN_TERRITORIES)) {
+        tradeInTerritories = new HashSet<>();
+      } else {
+        tradeInTerritories.clear();
+      }
+    }
+  }
+
+  /**
+   * Returns the union-find forest of the fortify components, rebuilding it if it was invalidated.
+   * A rebuilt forest is flat, every territory points directly to the root of its component.
+   */
+  private int[] getFortifyComponents() {
+    int[] parents = fortifyComponents;
+    if (parents == null) {
+      parents = new int[territoryOccupantIds.length];
+      for (int territoryId = 0; territoryId < parents.length; territoryId++) {
+        parents[territoryId] = territoryId;
+      }
+      for (int territoryId : territoryIdArray) {
+        int occupant = territoryOccupantIds[territoryId];
+        if (occupant >= 0) {
+          for (int neighborId : neighborIds[territoryId]) {
+            if (territoryOccupantIds[neighborId] == occupant) {
+              int root = findFortifyComponent(parents, territoryId);
+              int neighborRoot = findFortifyComponent(parents, neighborId);
+              if (root != neighborRoot) {
+                parents[neighborRoot] = root;
+              }
+            }
+          }
+        }
+      }
+      for (int territoryId : territoryIdArray) {
+        parents[territoryId] = findFortifyComponent(parents, territoryId);
+      }
+      fortifyComponents = parents;
+      sharedComponents &= ~FORTIFY_COMPONENTS;
+    }
+    return parents;
+  }
+
+  private static int findFortifyComponent(int[] parents, int territoryId) {
+    while (parents[territoryId] != territoryId) {
+      territoryId = parents[territoryId];
+    }
+    return territoryId;
+  }
+
+  /**
+   * Returns the index of the territory count of the given occupant in the given continent, or of
+   * its total if continentIndex is -1.
+   */
+  private int occupantCountIndex(int occupant, int continentIndex) {
+    return (occupant + 1) * (continentIdArray.length + 1) + 1 + continentIndex;
+  }
+
+  /**
+   * Updates the fortify components after territoryId changed its occupant. Joining a region only
+   * links trees of the forest. If the previous occupant still holds a neighbor the region might
+   * have been split, the forest is then dropped and rebuilt on the next fortify query.
+   */
+  private void updateFortifyComponents(int territoryId, int previousOccupant) {
+    if (fortifyComponents == null) {
+      return;
+    }
+    if (previousOccupant >= 0 && countOccupiedNeighbors(territoryId, previousOccupant) > 0) {
+      fortifyComponents = null;
+      return;
+    }
+    if (isShared(FORTIFY_COMPONENTS)) {
+      fortifyComponents = fortifyComponents.clone();
+    }
+    int[] parents = fortifyComponents;
+    int occupant = territoryOccupantIds[territoryId];
+    parents[territoryId] = territoryId;
+    if (occupant >= 0) {
+      for (int neighborId : neighborIds[territoryId]) {
+        if (territoryOccupantIds[neighborId] == occupant) {
+          int neighborRoot = findFortifyComponent(parents, neighborId);
+          if (neighborRoot != territoryId) {
+            parents[neighborRoot] = territoryId;
+          }
+        }
+      }
+    }
+  }
+
+  private void record(int kind, int index, int oldValue) {
+    if (savepointDepth > 0) {
+      if (journalSize + 2 > journal.length) {
+        journal = Arrays.copyOf(journal, journal.length * 2);
+      }
+      journal[journalSize++] = index << 2 | kind;
+      journal[journalSize++] = oldValue;
+    }
+  }
+
+  /**
+   * Remembers the current state so that it can be restored by rollback(). Savepoints nest and have
+   * to be rolled back in reverse order.
+   */
+  void savepoint() {
+    if (savepoints == null) {
+      savepoints = new Savepoint[16];
+      journal = new int[64];
+    } else if (savepointDepth == savepoints.length) {
+      savepoints = Arrays.copyOf(savepoints, savepoints.length * 2);
+    }
+    Savepoint savepoint = savepoints[savepointDepth];
+    if (savepoint == null) {
+      savepoint = savepoints[savepointDepth] = new Savepoint();
+    }
+    savepointDepth++;
+
+    savepoint.journalSize = journalSize;
+    savepoint.sharedComponents = sharedComponents;
+    savepoint.fortifyComponents = fortifyComponents;
+    savepoint.deckOfCards = deckOfCards;
+    savepoint.discardPile = discardPile;
+    savepoint.playerCards = playerCards;
+    savepoint.reinforcedTerritories = reinforcedTerritories;
+    savepoint.involvedTroopsInAttacks = involvedTroopsInAttacks;
+    savepoint.tradeInTerritories = tradeInTerritories;
+    savepoint.minMatchingTerritories = minMatchingTerritories;
+    savepoint.maxMatchingTerritories = maxMatchingTerritories;
+    savepoint.tradeIns = tradeIns;
+    savepoint.attackingId = attackingId;
+    savepoint.defendingId = defendingId;
+    savepoint.troops = troops;
+    savepoint.tradedInId = tradedInId;
+    savepoint.hasOccupiedCountry = hasOccupiedCountry;
+    savepoint.phase = phase;
+    savepoint.initialSelectMaybe = initialSelectMaybe;
+    savepoint.initialReinforceMaybe = initialReinforceMaybe;
+
+    // the savepoint references the collections now, the next write has to copy them
+    sharedComponents |= ALL_COMPONENTS & ~TERRITORY_ARRAYS;
+  }
+
+  int getSavepointDepth() {
+    return savepointDepth;
+  }
+
+  /**
+   * Forgets all savepoints without restoring any of them.
+   */
+  void discardSavepoints() {
+    if (savepointDepth > 0) {
+      Arrays.fill(savepoints, 0, savepointDepth, null);
+      savepointDepth = 0;
+      journalSize = 0;
+    }
+  }
+
+  /**
+   * Restores the state of the most recent savepoint and discards it.
+   */
+  void rollback() {
+    if (savepointDepth <= 0) {
+      throw new IllegalStateException("No savepoint to roll back to");
+    }
+    Savepoint savepoint = savepoints[--savepointDepth];
+    // the fortify components of the savepoint are restored below
+    fortifyComponents = null;
+
+    while (journalSize > savepoint.journalSize) {
+      int oldValue = journal[--journalSize];
+      int entry = journal[--journalSize];
+      int index = entry >>> 2;
+      switch (entry & 3) {
+        case OCCUPANT_ENTRY:
+          putTerritoryOccupantId(index, oldValue);
+          break;
+        case TROOPS_ENTRY:
+          putTerritoryTroops(index, oldValue);
+          break;
+        default:
+          putNonDeployedReinforcements(index, oldValue);
+      }
+    }
+
+    // the arrays were restored in place and might have been shared since the savepoint
+    sharedComponents = (savepoint.sharedComponents & ~TERRITORY_ARRAYS)
+        | (sharedComponents & TERRITORY_ARRAYS);
+    fortifyComponents = savepoint.fortifyComponents;
+    deckOfCards = savepoint.deckOfCards;
+    discardPile = savepoint.discardPile;
+    playerCards = savepoint.playerCards;
+    reinforcedTerritories = savepoint.reinforcedTerritories;
+    involvedTroopsInAttacks = savepoint.involvedTroopsInAttacks;
+    tradeInTerritories = savepoint.tradeInTerritories;
+    minMatchingTerritories = savepoint.minMatchingTerritories;
+    maxMatchingTerritories = savepoint.maxMatchingTerritories;
+    tradeIns = savepoint.tradeIns;
+    attackingId = savepoint.attackingId;
+    defendingId = savepoint.defendingId;
+    troops = savepoint.troops;
+    tradedInId = savepoint.tradedInId;
+    hasOccupiedCountry = savepoint.hasOccupiedCountry;
+    phase = savepoint.phase;
+    initialSelectMaybe = savepoint.initialSelectMaybe;
+    initialReinforceMaybe = savepoint.initialReinforceMaybe;
+    savepoint.clear();
   }
 
   private static void selectRandomMissions(List<RiskMission> missionList,
@@ -459,12 +861,19 @@ public class RiskBoard {
   }
 
   /**
-   * Returns all territories mapped from their territoryId.
+   * Returns all territories mapped from their territoryId. Note that the board itself only keeps
+   * the occupants and troops in arrays, the returned territories are therefore a snapshot and
+   * changing them does not change the board.
    *
    * @return a map of territories mapped by their territoryId.
    */
   public Map<Integer, RiskTerritory> getTerritories() {
-    return territories;
+    Map<Integer, RiskTerritory> territories = new HashMap<>();
+    for (int territoryId : territoryIdArray) {
+      territories.put(territoryId, new RiskTerritory(territoryContinentIds[territoryId],
+          territoryOccupantIds[territoryId], territoryTroops[territoryId]));
+    }
+    return Collections.unmodifiableMap(territories);
   }
 
   /**
@@ -474,7 +883,7 @@ public class RiskBoard {
    * @return a set of all territoryIds.
    */
   public Set<Integer> getTerritoryIds() {
-    return territories.keySet();
+    return territoryIds;
   }
 
   /**
@@ -485,7 +894,8 @@ public class RiskBoard {
    * @return true iff present on the board, otherwise false.
    */
   public boolean isTerritory(int territoryId) {
-    return territories.containsKey(territoryId);
+    return 0 <= territoryId && territoryId < territoryContinentIds.length
+        && territoryContinentIds[territoryId] != NO_TERRITORY;
   }
 
   /**
@@ -542,17 +952,39 @@ public class RiskBoard {
    * @return the id of the occupying player.
    */
   public int getTerritoryOccupantId(int territoryId) {
-    return territories.containsKey(territoryId) ? territories.get(territoryId)
-        .getOccupantPlayerId()
-        : -1;
+    return isTerritory(territoryId) ? territoryOccupantIds[territoryId] : -1;
   }
 
   private void setTerritoryOccupantId(int territoryOccupantId, int playerId) {
     if (isTerritory(territoryOccupantId)) {
-      territories.get(territoryOccupantId).setOccupantPlayerId(playerId);
+      if (territoryOccupantIds[territoryOccupantId] != playerId) {
+        record(OCCUPANT_ENTRY, territoryOccupantId, territoryOccupantIds[territoryOccupantId]);
+        putTerritoryOccupantId(territoryOccupantId, playerId);
+      }
     }
   }
 
+  private void putTerritoryOccupantId(int territoryId, int playerId) {
+    int[] territoryOccupantIds = mutableTerritoryOccupantIds();
+    int previousOccupant = territoryOccupantIds[territoryId];
+    long bit = 1L << territoryId;
+    occupantMasks[previousOccupant + 1][territoryId >>> 6] &= ~bit;
+    occupantMasks[playerId + 1][territoryId >>> 6] |= bit;
+    int continentIndex = territoryContinentIndices[territoryId];
+    if (--occupantCounts[occupantCountIndex(previousOccupant, -1)] == 0 && previousOccupant >= 0) {
+      livingPlayers--;
+    }
+    if (++occupantCounts[occupantCountIndex(playerId, -1)] == 1 && playerId >= 0) {
+      livingPlayers++;
+    }
+    occupantCounts[occupantCountIndex(previousOccupant, continentIndex)]--;
+    occupantCounts[occupantCountIndex(playerId, continentIndex)]++;
+    territoryKey ^= zobrist(OCCUPANT_KEY, territoryId, previousOccupant)
+        ^ zobrist(OCCUPANT_KEY, territoryId, playerId);
+    territoryOccupantIds[territoryId] = playerId;
+    updateFortifyComponents(territoryId, previousOccupant);
+  }
+
   /**
    * Returns how many troops currently are stationed in the given territory. Zero indicates either
    * that there are no troops stationed or that the territoryId does not exist on the board. Check
@@ -562,7 +994,123 @@ public class RiskBoard {
    * @return the id of the occupying player.
    */
   public int getTerritoryTroops(int territoryId) {
-    return territories.containsKey(territoryId) ? territories.get(territoryId).getTroops() : 0;
+    return isTerritory(territoryId) ? territoryTroops[territoryId] : 0;
+  }
+
+  private void setTerritoryTroops(int territoryId, int troops) {
+    if (isTerritory(territoryId)) {
+      if (territoryTroops[territoryId] != troops) {
+        record(TROOPS_ENTRY, territoryId, territoryTroops[territoryId]);
+        putTerritoryTroops(territoryId, troops);
+      }
+    }
+  }
+
+  private void addTerritoryTroops(int territoryId, int troops) {
+    setTerritoryTroops(territoryId, getTerritoryTroops(territoryId) + troops);
+  }
+
+  private void putTerritoryTroops(int territoryId, int troops) {
+    int[] territoryTroops = mutableTerritoryTroops();
+    territoryKey ^= zobrist(TROOPS_KEY, territoryId, territoryTroops[territoryId])
+        ^ zobrist(TROOPS_KEY, territoryId, troops);
+    territoryTroops[territoryId] = troops;
+  }
+
+  private void addNonDeployedReinforcements(int player, int reinforcements) {
+    if (reinforcements != 0) {
+      record(REINFORCEMENTS_ENTRY, player, nonDeployedReinforcements[player]);
+      putNonDeployedReinforcements(player, nonDeployedReinforcements[player] + reinforcements);
+    }
+  }
+
+  private void putNonDeployedReinforcements(int player, int reinforcements) {
+    int[] nonDeployedReinforcements = mutableNonDeployedReinforcements();
+    territoryKey ^= zobrist(REINFORCEMENTS_KEY, player, nonDeployedReinforcements[player])
+        ^ zobrist(REINFORCEMENTS_KEY, player, reinforcements);
+    nonDeployedReinforcements[player] = reinforcements;
+  }
+
+  /**
+   * Returns a 64-bit Zobrist key of the visible state of this board: occupants, troops, non
+   * deployed reinforcements, phase, pending attack, trade-ins, the territories and range of
+   * matching territories of the last trade-in, whether the initial phases are still running and
+   * the cards held by each player, combined with the player to move. The part for the territories
+   * is kept up to date with every change, the small collections are folded in when the key is
+   * requested. The order of the deck is not part of the key. The trade-in territories and matching
+   * range stay on the board after their bonus was awarded, so they can keep otherwise equal
+   * positions apart, which only costs sharing and never pools different positions.
+   *
+   * @param currentPlayerId the player to move
+   * @return the Zobrist key of this board
+   */
+  long getZobristKey(int currentPlayerId) {
+    // the flags only tell that the initial phases might still be running, the key tells if they do
+    int initialSelect = initialSelectMaybe && getNrOfTerritoriesOccupiedByPlayer(-1) > 0 ? 1 : 0;
+    int initialReinforce = initialReinforceMaybe && areReinforcementsLeft() ? 1 : 0;
+    long key = territoryKey
+        ^ zobrist(PLAYER_KEY, 0, currentPlayerId)
+        ^ zobrist(PHASE_KEY, hasOccupiedCountry ? 1 : 0, phase.ordinal())
+        ^ zobrist(ATTACK_KEY, attackingId + 1, defendingId + 1)
+        ^ zobrist(ATTACK_TROOPS_KEY, 0, troops)
+        ^ zobrist(TRADE_IN_KEY, tradedInId + 5, tradeIns)
+        ^ zobrist(MATCHING_KEY, minMatchingTerritories, maxMatchingTerritories)
+        ^ zobrist(INITIAL_KEY, initialSelect, initialReinforce);
+    if (tradeInTerritories != null) {
+      for (int territoryId : tradeInTerritories) {
+        key ^= zobrist(TRADE_IN_TERRITORY_KEY, territoryId, 0);
+      }
+    }
+    for (int territoryId : reinforcedTerritories) {
+      key ^= zobrist(REINFORCED_KEY, territoryId, 0);
+    }
+    for (Entry<Integer, Integer> involvedTroops : involvedTroopsInAttacks.entrySet()) {
+      key ^= zobrist(INVOLVED_TROOPS_KEY, involvedTroops.getKey(), involvedTroops.getValue());
+    }
+    if (playerCards != null) {
+      long cards = 0;
+      for (Entry<Integer, List<RiskCard>> hand : playerCards.entrySet()) {
+        for (RiskCard card : hand.getValue()) {
+          // added up instead of xor-ed as jokers and wildcards can be held twice
+          cards += zobrist(CARD_KEY, hand.getKey(),
+              card.getCardType() << 16 | (card.getTerritoryId() & 0xFFFF));
+        }
+      }
+      key ^= cards;
+    }
+    return key;
+  }
+
+  /**
+   * Returns the Zobrist key of a single feature. The keys are derived with the SplitMix64
+   * finalizer instead of being drawn into tables, so they need no sizing and are the same for every
+   * board.
+   */
+  private static long zobrist(int feature, int index, int value) {
+    long z = ((long) feature << 56 ^ (long) index << 32 ^ (value & 0xFFFFFFFFL))
+        + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Returns the id of the continent the given territory belongs to. Note that if the territoryId
+   * does not exist this method will return Integer.MIN_VALUE.
+   *
+   * @param territoryId the id of the territory
+   * @return the id of the continent of the territory.
+   */
+  public int getTerritoryContinentId(int territoryId) {
+    return isTerritory(territoryId) ? territoryContinentIds[territoryId] : NO_TERRITORY;
+  }
+
+  int[] getTerritoryIdArray() {
+    return territoryIdArray;
+  }
+
+  int[] getNeighborIds(int territoryId) {
+    return neighborIds[territoryId];
   }
 
   String getMap() {
@@ -586,23 +1134,21 @@ public class RiskBoard {
   }
 
   void initialSelect(int selected, int playerId) {
-    RiskTerritory territory = territories.get(selected);
-    territory.setOccupantPlayerId(playerId);
-    territory.setTroops(1);
-    nonDeployedReinforcements[playerId]--;
+    setTerritoryOccupantId(selected, playerId);
+    setTerritoryTroops(selected, 1);
+    addNonDeployedReinforcements(playerId, -1);
   }
 
   void endMove(int nextPlayer) {
     phase = RiskPhase.REINFORCEMENT;
-    involvedTroopsInAttacks.clear();
+    clearInvolvedTroopsInAttacks();
     hasOccupiedCountry = false;
     awardReinforcements(nextPlayer);
-    reinforcedTerritories.clear();
+    clearReinforcedTerritories();
   }
 
   private void awardReinforcements(int player) {
-    int occupiedTerritories = Math.toIntExact(territories.values().stream()
-        .filter(t -> t.getOccupantPlayerId() == player).count());
+    int occupiedTerritories = getNrOfTerritoriesOccupiedByPlayer(player);
     int reinforcements = Math
         .max(reinforcementAtLeast, occupiedTerritories / reinforcementThreshold);
 
@@ -612,7 +1158,7 @@ public class RiskBoard {
       }
     }
 
-    nonDeployedReinforcements[player] += reinforcements;
+    addNonDeployedReinforcements(player, reinforcements);
   }
 
   boolean areReinforcementsLeft() {
@@ -674,16 +1220,16 @@ public class RiskBoard {
 
   int getNrOfDefenderDice() {
 
-    if (!territories.containsKey(defendingId)) {
+    if (!isTerritory(defendingId)) {
       return 0;
     }
 
-    return Math.min(maxDefenderDice, territories.get(defendingId).getTroops());
+    return Math.min(maxDefenderDice, territoryTroops[defendingId]);
   }
 
   int getNrOfAttackerDice() {
 
-    if (!territories.containsKey(attackingId)) {
+    if (!isTerritory(attackingId)) {
       return 0;
     }
 
@@ -691,11 +1237,10 @@ public class RiskBoard {
   }
 
   void reinforce(int player, int reinforcedId, int troops) {
-    if (territories.containsKey(reinforcedId)) {
-      RiskTerritory territory = territories.get(reinforcedId);
-      territory.setTroops(territory.getTroops() + troops);
-      nonDeployedReinforcements[player] -= troops;
-      reinforcedTerritories.add(reinforcedId);
+    if (isTerritory(reinforcedId)) {
+      addTerritoryTroops(reinforcedId, troops);
+      addNonDeployedReinforcements(player, -troops);
+      mutableReinforcedTerritories().add(reinforcedId);
     }
   }
 
@@ -705,8 +1250,8 @@ public class RiskBoard {
 
   void endReinforcementPhase() {
     phase = RiskPhase.ATTACK;
-    reinforcedTerritories.clear();
-    tradeInTerritories.clear();
+    clearReinforcedTerritories();
+    clearTradeInTerritories();
     tradedInId = -5;
   }
 
@@ -718,7 +1263,7 @@ public class RiskBoard {
    * @return a set of ids of the neighboring territories.
    */
   public Set<Integer> neighboringTerritories(int territoryId) {
-    return Graphs.neighborSetOf(gameBoard, territoryId);
+    return isTerritory(territoryId) ? neighborSets.get(territoryId) : Set.of();
   }
 
   /**
@@ -731,9 +1276,18 @@ public class RiskBoard {
    * @return a set of ids of the neighboring enemy territories.
    */
   public Set<Integer> neighboringEnemyTerritories(int territoryId) {
-    final int self = getTerritoryOccupantId(territoryId);
-    return Graphs.neighborSetOf(gameBoard, territoryId).stream()
-        .filter(id -> getTerritoryOccupantId(id) != self).collect(Collectors.toSet());
+    return neighboringTerritories(territoryId, true);
+  }
+
+  /**
+   * Return the number of neighboring territories which are not occupied with the same occupantId.
+   * This is equivalent to neighboringEnemyTerritories(territoryId).size().
+   *
+   * @param territoryId the id of the territory
+   * @return the number of neighboring enemy territories.
+   */
+  public int getNrOfNeighboringEnemyTerritories(int territoryId) {
+    return countNeighboringTerritories(territoryId, true);
   }
 
   /**
@@ -746,9 +1300,56 @@ public class RiskBoard {
    * @return a set of ids of the neighboring friendly territories.
    */
   public Set<Integer> neighboringFriendlyTerritories(int territoryId) {
-    final int self = getTerritoryOccupantId(territoryId);
-    return Graphs.neighborSetOf(gameBoard, territoryId).stream()
-        .filter(id -> getTerritoryOccupantId(id) == self).collect(Collectors.toSet());
+    return neighboringTerritories(territoryId, false);
+  }
+
+  /**
+   * Return the number of neighboring territories which are occupied with the same occupantId. This
+   * is equivalent to neighboringFriendlyTerritories(territoryId).size().
+   *
+   * @param territoryId the id of the territory
+   * @return the number of neighboring friendly territories.
+   */
+  public int getNrOfNeighboringFriendlyTerritories(int territoryId) {
+    return countNeighboringTerritories(territoryId, false);
+  }
+
+  private Set<Integer> neighboringTerritories(int territoryId, boolean enemies) {
+    Set<Integer> territories = new HashSet<>();
+    if (isTerritory(territoryId)) {
+      long[] neighbors = neighborMasks[territoryId];
+      long[] friends = occupantMasks[territoryOccupantIds[territoryId] + 1];
+      for (int w = 0; w < neighbors.length; w++) {
+        long word = neighbors[w] & (enemies ? ~friends[w] : friends[w]);
+        while (word != 0) {
+          territories.add((w << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+    }
+    return territories;
+  }
+
+  private int countOccupiedNeighbors(int territoryId, int playerId) {
+    int count = 0;
+    long[] neighbors = neighborMasks[territoryId];
+    long[] occupied = occupantMasks[playerId + 1];
+    for (int w = 0; w < neighbors.length; w++) {
+      count += Long.bitCount(neighbors[w] & occupied[w]);
+    }
+    return count;
+  }
+
+  private int countNeighboringTerritories(int territoryId, boolean enemies) {
+    int count = 0;
+    if (isTerritory(territoryId)) {
+      long[] neighbors = neighborMasks[territoryId];
+      long[] friends = occupantMasks[territoryOccupantIds[territoryId] + 1];
+      for (int w = 0; w < neighbors.length; w++) {
+        count += Long.bitCount(neighbors[w] & (enemies ? ~friends[w] : friends[w]));
+      }
+    }
+    return count;
   }
 
   /**
@@ -789,7 +1390,8 @@ public class RiskBoard {
    * @return true iff the two territories differ and are neighbors.
    */
   public boolean areNeighbors(int territoryId1, int territoryId2) {
-    return gameBoard.containsEdge(territoryId1, territoryId2);
+    return isTerritory(territoryId1) && isTerritory(territoryId2)
+        && (neighborMasks[territoryId1][territoryId2 >>> 6] & 1L << territoryId2) != 0;
   }
 
   /**
@@ -801,9 +1403,18 @@ public class RiskBoard {
    * @return a set of territories occupied by a given player.
    */
   public Set<Integer> getTerritoriesOccupiedByPlayer(final int playerId) {
-    return territories.entrySet().stream()
-        .filter(entry -> entry.getValue().getOccupantPlayerId() == playerId).map(Entry::getKey)
-        .collect(Collectors.toSet());
+    Set<Integer> occupiedTerritories = new HashSet<>();
+    if (-1 <= playerId && playerId < numberOfPlayers) {
+      long[] occupied = occupantMasks[playerId + 1];
+      for (int w = 0; w < occupied.length; w++) {
+        long word = occupied[w];
+        while (word != 0) {
+          occupiedTerritories.add((w << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+    }
+    return occupiedTerritories;
   }
 
   /**
@@ -815,8 +1426,10 @@ public class RiskBoard {
    * @return the number of territories occupied by a given player.
    */
   public int getNrOfTerritoriesOccupiedByPlayer(final int playerId) {
-    return Math.toIntExact(territories.entrySet().stream()
-        .filter(entry -> entry.getValue().getOccupantPlayerId() == playerId).count());
+    if (-1 <= playerId && playerId < numberOfPlayers) {
+      return occupantCounts[occupantCountIndex(playerId, -1)];
+    }
+    return 0;
   }
 
   /**
@@ -828,7 +1441,16 @@ public class RiskBoard {
    * @return true iff there is any territory with the playerId as occupantId
    */
   public boolean isPlayerStillAlive(final int playerId) {
-    return territories.values().stream().anyMatch(t -> t.getOccupantPlayerId() == playerId);
+    return getNrOfTerritoriesOccupiedByPlayer(playerId) > 0;
+  }
+
+  /**
+   * Return the number of players which still occupy at least one territory.
+   *
+   * @return the number of players still alive
+   */
+  public int getNrOfLivingPlayers() {
+    return livingPlayers;
   }
 
   /**
@@ -842,10 +1464,13 @@ public class RiskBoard {
    * troop stationed.
    */
   public Set<Integer> getTerritoriesOccupiedByPlayerWithMoreThanOneTroops(final int playerId) {
-    return territories.entrySet().stream()
-        .filter(entry -> entry.getValue().getOccupantPlayerId() == playerId
-            && entry.getValue().getTroops() > 1).map(Entry::getKey)
-        .collect(Collectors.toSet());
+    Set<Integer> occupiedTerritories = new HashSet<>();
+    for (int territoryId : territoryIdArray) {
+      if (territoryOccupantIds[territoryId] == playerId && territoryTroops[territoryId] > 1) {
+        occupiedTerritories.add(territoryId);
+      }
+    }
+    return occupiedTerritories;
   }
 
   void startAttack(int attackingId, int defendingId, int troops) {
@@ -854,6 +1479,14 @@ public class RiskBoard {
     this.troops = troops;
   }
 
+  int getAttackingId() {
+    return attackingId;
+  }
+
+  int getDefendingId() {
+    return defendingId;
+  }
+
   boolean isAttack() {
     return phase == RiskPhase.ATTACK && attackingId >= 0 && defendingId >= 0 && troops > 0;
   }
@@ -861,10 +1494,10 @@ public class RiskBoard {
   int endAttack(int attackerCasualties, int defendingCasualties) {
     int attackerId = getTerritoryOccupantId(attackingId);
     if (isAttack()) {
-      territories.get(attackingId).removeTroops(attackerCasualties);
-      territories.get(defendingId).removeTroops(defendingCasualties);
+      addTerritoryTroops(attackingId, -attackerCasualties);
+      addTerritoryTroops(defendingId, -defendingCasualties);
       troops -= attackerCasualties;
-      involvedTroopsInAttacks.compute(attackingId,
+      mutableInvolvedTroopsInAttacks().compute(attackingId,
           (k, v) -> (v == null) ? (troops)
               : Math.max(v, troops));
 
@@ -900,20 +1533,12 @@ public class RiskBoard {
   }
 
   void occupy(int troops) {
-    territories.get(attackingId).removeTroops(troops);
-    territories.get(defendingId).addTroops(troops);
+    addTerritoryTroops(attackingId, -troops);
+    addTerritoryTroops(defendingId, troops);
+    Map<Integer, Integer> involvedTroopsInAttacks = mutableInvolvedTroopsInAttacks();
     involvedTroopsInAttacks
         .compute(attackingId, (k, v) -> v == null ? 0 : Math.max(0, v - troops));
     involvedTroopsInAttacks.compute(defendingId, (k, v) -> v == null ? troops : v + troops);
-    if (!fortifyOnlyFromSingleTerritory) {
-      int attackerId = getTerritoryOccupantId(attackingId);
-      for (Integer neighbor : neighboringFriendlyTerritories(defendingId)) {
-        DefaultEdge edge = fortifyConnectivityGraph.get(attackerId).addEdge(neighbor, defendingId);
-        fortifyConnectivityInspector.get(attackerId).edgeAdded(
-            new GraphEdgeChangeEvent<>(this, GraphEdgeChangeEvent.EDGE_ADDED, edge, neighbor,
-                defendingId));
-      }
-    }
     attackingId = -1;
     defendingId = -1;
     this.troops = 0;
@@ -983,9 +1608,13 @@ public class RiskBoard {
   }
 
   private boolean continentConquered(int player, int continent) {
-    return continents.containsKey(continent) && territories.values().stream()
-        .filter(t -> t.getContinentId() == continent)
-        .allMatch(t -> t.getOccupantPlayerId() == player);
+    if (!continents.containsKey(continent)) {
+      return false;
+    }
+    int continentIndex = Arrays.binarySearch(continentIdArray, continent);
+    return continentSizes[continentIndex] == 0 || (-1 <= player && player < numberOfPlayers
+        && occupantCounts[occupantCountIndex(player, continentIndex)]
+        == continentSizes[continentIndex]);
   }
 
   private boolean territoriesOccupied(int player, Collection<Integer> targetIds, int atLeast) {
@@ -1000,37 +1629,16 @@ public class RiskBoard {
   }
 
   private Map<Integer, Set<Integer>> playerConqueredContinents() {
-    Map<Integer, Map<Integer, RiskTerritory>> continents = new HashMap<>();
-    for (Entry<Integer, RiskTerritory> territory : territories.entrySet()) {
-      int continent = territory.getValue().getContinentId();
-      continents.putIfAbsent(continent, new HashMap<>());
-      continents.get(continent).put(territory.getKey(), territory.getValue());
-    }
-
-    Set<Integer> toRemove = new TreeSet<>();
-
-    for (Entry<Integer, Map<Integer, RiskTerritory>> continent : continents.entrySet()) {
-      if (continent.getValue().values().stream().mapToInt(RiskTerritory::getOccupantPlayerId)
-          .distinct().count() != 1) {
-        toRemove.add(continent.getKey());
-      }
-    }
-
-    for (Integer remove : toRemove) {
-      continents.remove(remove);
-    }
-
     Map<Integer, Set<Integer>> playerConqueredContinents = new HashMap<>();
 
-    for (Entry<Integer, Map<Integer, RiskTerritory>> continent : continents.entrySet()) {
-      int player = continent.getValue().values().stream().findFirst()
-          .map(RiskTerritory::getOccupantPlayerId).orElse(-1);
-
-      if (player >= 0) {
-        playerConqueredContinents.putIfAbsent(player, new TreeSet<>());
-        playerConqueredContinents.get(player).add(continent.getKey());
+    for (int player = 0; player < numberOfPlayers; player++) {
+      for (int c = 0; c < continentIdArray.length; c++) {
+        if (continentSizes[c] > 0 && occupantCounts[occupantCountIndex(player, c)]
+            == continentSizes[c]) {
+          playerConqueredContinents.computeIfAbsent(player, p -> new TreeSet<>())
+              .add(continentIdArray[c]);
+        }
       }
-
     }
 
     return playerConqueredContinents;
@@ -1049,10 +1657,23 @@ public class RiskBoard {
       return neighboringFriendlyTerritories(territoryId);
     }
 
+    Set<Integer> fortifyableTerritories = new HashSet<>();
     int player = getTerritoryOccupantId(territoryId);
-    Set<Integer> fortifyableTerritories = fortifyConnectivityInspector.get(player)
-        .connectedSetOf(territoryId);
-    fortifyableTerritories.remove(territoryId);
+    if (player >= 0) {
+      int[] parents = getFortifyComponents();
+      int root = findFortifyComponent(parents, territoryId);
+      long[] occupied = occupantMasks[player + 1];
+      for (int w = 0; w < occupied.length; w++) {
+        long word = occupied[w];
+        while (word != 0) {
+          int id = (w << 6) + Long.numberOfTrailingZeros(word);
+          if (id != territoryId && findFortifyComponent(parents, id) == root) {
+            fortifyableTerritories.add(id);
+          }
+          word &= word - 1;
+        }
+      }
+    }
     return fortifyableTerritories;
   }
 
@@ -1069,14 +1690,15 @@ public class RiskBoard {
   public boolean canFortify(int fortifyingId, int fortifiedId) {
     int occupant = getTerritoryOccupantId(fortifyingId);
     return occupant >= 0 && occupant == getTerritoryOccupantId(fortifiedId)
-        && (fortifyOnlyFromSingleTerritory || fortifyConnectivityInspector.get(occupant)
-        .pathExists(fortifyingId, fortifiedId))
+        && (fortifyOnlyFromSingleTerritory
+        || findFortifyComponent(getFortifyComponents(), fortifyingId)
+        == findFortifyComponent(getFortifyComponents(), fortifiedId))
         && (!fortifyOnlyFromSingleTerritory || areNeighbors(fortifyingId, fortifiedId));
   }
 
   void fortify(int fortifyingId, int fortifiedId, int troops) {
-    territories.get(fortifyingId).removeTroops(troops);
-    territories.get(fortifiedId).addTroops(troops);
+    addTerritoryTroops(fortifyingId, -troops);
+    addTerritoryTroops(fortifiedId, troops);
   }
 
   boolean isFortifyOnlyFromSingleTerritory() {
@@ -1094,7 +1716,7 @@ public class RiskBoard {
   public int getFortifyableTroops(int territoryId) {
     int troops = getTerritoryTroops(territoryId);
     if (fortifyOnlyWithNonFightingArmies) {
-      troops -= involvedTroopsInAttacks.get(territoryId);
+      troops -= involvedTroopsInAttacks.getOrDefault(territoryId, 0);
     }
 
     return Math.min(troops, getMobileTroops(territoryId));
@@ -1321,18 +1943,22 @@ public class RiskBoard {
   void tradeIn(Set<Integer> cardIds, int player) {
     List<RiskCard> cards = cardIds.stream()
         .map(i -> playerCards.get(player).get(i)).collect(Collectors.toCollection(LinkedList::new));
-    this.discardPile.addAll(cards);
+    mutableDiscardPile().addAll(cards);
     tradeInTerritories = cards.stream().filter(
         c -> c.getCardType() != RiskCard.WILDCARD && c.getCardType() != RiskCard.JOKER
             && getTerritoryOccupantId(c.getTerritoryId()) == player).map(RiskCard::getTerritoryId)
-        .collect(Collectors.toUnmodifiableSet());
+        .collect(Collectors.toCollection(HashSet::new));
+    sharedComponents &= ~TRADE_IN_TERRITORIES;
 
     Set<Integer> discarded = this.discardPile.stream().map(RiskCard::getTerritoryId).collect(
         Collectors.toUnmodifiableSet());
 
-    long maxPossible = territories.entrySet().stream().filter(
-        t -> t.getValue().getOccupantPlayerId() == player && !discarded.contains(t.getKey()))
-        .count();
+    long maxPossible = 0;
+    for (int territoryId : territoryIdArray) {
+      if (territoryOccupantIds[territoryId] == player && !discarded.contains(territoryId)) {
+        maxPossible++;
+      }
+    }
 
     long numberOfWildcards = cards.stream().filter(c -> c.getCardType() == RiskCard.WILDCARD)
         .count();
@@ -1340,15 +1966,15 @@ public class RiskBoard {
     minMatchingTerritories = tradeInTerritories.size();
     maxMatchingTerritories =
         minMatchingTerritories + (int) Math.min(numberOfWildcards, maxPossible);
-    this.playerCards.get(player).removeAll(cards);
-    reinforcedTerritories.clear();
+    mutablePlayerCards().get(player).removeAll(cards);
+    clearReinforcedTerritories();
     phase = RiskPhase.REINFORCEMENT;
     tradedInId = player;
   }
 
   void awardBonus(int nrOfMatchingTerritories, int player) {
-    this.nonDeployedReinforcements[player] +=
-        getTradeInBonus() + nrOfMatchingTerritories * tradeInTerritoryBonus;
+    addNonDeployedReinforcements(player,
+        getTradeInBonus() + nrOfMatchingTerritories * tradeInTerritoryBonus);
     tradeIns++;
   }
 
@@ -1425,15 +2051,16 @@ public class RiskBoard {
         reshuffle();
       }
       if (!deckOfCards.isEmpty()) {
-        playerCards.get(player).add(deckOfCards.pop());
+        mutablePlayerCards().get(player).add(mutableDeckOfCards().pop());
       }
     }
   }
 
   private void reshuffle() {
     if (withCards && discardPile != null && deckOfCards != null) {
+      List<RiskCard> discardPile = mutableDiscardPile();
       Collections.shuffle(discardPile);
-      deckOfCards.addAll(discardPile);
+      mutableDeckOfCards().addAll(discardPile);
       discardPile.clear();
     }
   }
@@ -1452,20 +2079,54 @@ public class RiskBoard {
 
     Collections.shuffle(deckOfCards);
 
-    this.deckOfCards.clear();
-    this.deckOfCards.addAll(deckOfCards);
+    this.deckOfCards = new ArrayDeque<>(deckOfCards);
+    sharedComponents &= ~DECK_OF_CARDS;
 
   }
 
   private void stripOutCardInformation(int player) {
-    for (Entry<Integer, List<RiskCard>> playerCard : playerCards.entrySet()) {
+    for (Entry<Integer, List<RiskCard>> playerCard : mutablePlayerCards().entrySet()) {
       int playerSlot = playerCard.getKey();
       if (playerSlot != player) {
-        playerCards.get(playerSlot).replaceAll(c -> RiskCard.wildcard());
+        playerCard.getValue().replaceAll(c -> RiskCard.wildcard());
       }
     }
   }
 
+  private static final class Savepoint {
+
+    private int journalSize;
+    private int sharedComponents;
+    private int[] fortifyComponents;
+    private Deque<RiskCard> deckOfCards;
+    private List<RiskCard> discardPile;
+    private Map<Integer, List<RiskCard>> playerCards;
+    private Set<Integer> reinforcedTerritories;
+    private Map<Integer, Integer> involvedTroopsInAttacks;
+    private Set<Integer> tradeInTerritories;
+    private int minMatchingTerritories;
+    private int maxMatchingTerritories;
+    private int tradeIns;
+    private int attackingId;
+    private int defendingId;
+    private int troops;
+    private int tradedInId;
+    private boolean hasOccupiedCountry;
+    private RiskPhase phase;
+    private boolean initialSelectMaybe;
+    private boolean initialReinforceMaybe;
+
+    private void clear() {
+      fortifyComponents = null;
+      deckOfCards = null;
+      discardPile = null;
+      playerCards = null;
+      reinforcedTerritories = null;
+      involvedTroopsInAttacks = null;
+      tradeInTerritories = null;
+    }
+  }
+
   private enum RiskPhase {
     REINFORCEMENT,
     ATTACK,
@@ -0,0 +1,215 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.ac.tuwien.ifs.sge.agent.risk.AustraliaFirstAgent.Parallelism;
+import at.ac.tuwien.ifs.sge.game.risk.board.BattleTable;
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskBoard;
+import at.ac.tuwien.ifs.sge.util.tree.DoubleLinkedTree;
+import at.ac.tuwien.ifs.sge.util.tree.Tree;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class AustraliaFirstAgentTest {
+
+  private static final int NUMBER_OF_PLAYERS = 2;
+
+  /**
+   * Never runs out of time, so that the test can drive single steps of the search.
+   */
+  private static final class UntimedAgent extends AustraliaFirstAgent {
+
+    UntimedAgent() {
+      super(Math.sqrt(2), null, 0, 1);
+      setTimers(1, TimeUnit.HOURS);
+    }
+  }
+
+  @Test
+  public void test_widening_grows_with_the_plays_but_slower() {
+    assertEquals(1, AustraliaFirstAgent.widening(-1));
+    assertEquals(1, AustraliaFirstAgent.widening(0));
+    assertEquals(1, AustraliaFirstAgent.widening(1));
+    assertEquals(2, AustraliaFirstAgent.widening(2));
+    assertEquals(10, AustraliaFirstAgent.widening(100));
+
+    for (int plays = 1; plays < 10000; plays++) {
+      int width = AustraliaFirstAgent.widening(plays);
+      assertTrue(width <= AustraliaFirstAgent.widening(plays + 1));
+      assertTrue(width <= plays);
+    }
+  }
+
+  @Test
+  public void test_root_parallel_decision_merges_all_trees() {
+    AustraliaFirstAgent agent = new AustraliaFirstAgent(Math.sqrt(2), null, 0, 3,
+        Parallelism.ROOT);
+    assertEquals(3, decide(agent, position(1)).size());
+  }
+
+  @Test
+  public void test_tree_parallel_decision_searches_one_tree() {
+    AustraliaFirstAgent agent = new AustraliaFirstAgent(Math.sqrt(2), null, 0, 3,
+        Parallelism.TREE);
+    assertEquals(1, decide(agent, position(2)).size());
+  }
+
+  @Test
+  public void test_decision_with_several_playouts_per_leaf() {
+    AustraliaFirstAgent agent = new AustraliaFirstAgent(Math.sqrt(2), null, 0, 1,
+        Parallelism.ROOT, 4);
+    List<Tree<RiskGameNode<RiskAction>>> roots = decide(agent, position(3));
+    assertEquals(1, roots.size());
+    // every selected leaf is played out four times
+    assertEquals(0, roots.get(0).getNode().getPlays() % 4);
+  }
+
+  @Test
+  public void test_failing_worker_leaves_the_decision_to_the_others() {
+    AustraliaFirstAgent agent = new AustraliaFirstAgent(Math.sqrt(2), null, 0, 2,
+        Parallelism.ROOT);
+    Thread caller = Thread.currentThread();
+    RolloutPolicy heavy = new HeavyRolloutPolicy();
+    agent.setRolloutPolicy((game, random) -> {
+      if (Thread.currentThread() != caller) {
+        throw new IllegalStateException("Worker failed");
+      }
+      return heavy.nextAction(game, random);
+    });
+    assertEquals(1, decide(agent, position(4)).size());
+  }
+
+  @Test
+  public void test_chance_nodes_add_one_child_per_outcome_drawn_by_its_probability() {
+    Random random = new Random(5);
+    Risk game = new Risk(NUMBER_OF_PLAYERS);
+    RiskAction attack = null;
+    while (attack == null) {
+      if (game.getCurrentPlayer() >= 0 && game.getBoard().isAttackPhase()) {
+        RiskBoard board = game.getBoard();
+        for (RiskAction action : game.getPossibleActions()) {
+          if (!action.isEndPhase() && action.troops() >= 3
+              && board.getTerritoryTroops(action.defendingId()) >= 2) {
+            attack = action;
+          }
+        }
+      }
+      if (attack == null) {
+        game = (Risk) game.doAction(game.getCurrentPlayer() < 0
+            ? game.determineNextAction(random) : game.sampleRandomAction(random));
+      }
+    }
+    int player = game.getCurrentPlayer();
+    Risk chance = (Risk) game.doAction(attack);
+    BattleTable table = chance.getBattleTable();
+    int attackerDice = Math.min(attack.troops(), table.getMaxAttackerDice());
+    int defenderDice = Math.min(game.getBoard().getTerritoryTroops(attack.defendingId()),
+        table.getMaxDefenderDice());
+
+    AustraliaFirstAgent agent = new UntimedAgent();
+    agent.setUp(NUMBER_OF_PLAYERS, player);
+    Tree<RiskGameNode<RiskAction>> tree = new DoubleLinkedTree<>(new RiskGameNode<>(chance));
+    int visits = 6000;
+    for (int i = 0; i < visits; i++) {
+      Tree<RiskGameNode<RiskAction>> selected = agent.mcSelection(tree);
+      RiskAction outcome = selected.getNode().getAction();
+      assertSame(selected, tree.getNode().getOutcome(outcome));
+    }
+    agent.tearDown();
+
+    int compared = Math.min(attackerDice, defenderDice);
+    assertEquals(compared + 1, tree.getChildren().size());
+    for (Tree<RiskGameNode<RiskAction>> child : tree.getChildren()) {
+      RiskAction outcome = child.getNode().getAction();
+      assertSame(child, tree.getNode().getOutcome(outcome));
+      assertEquals(compared, outcome.attackerCasualties() + outcome.defenderCasualties());
+      double probability = table.getRoundProbability(attackerDice, defenderDice,
+          outcome.attackerCasualties());
+      assertEquals(probability, (double) child.getNode().getPlays() / visits, 0.03);
+    }
+  }
+
+  @Test
+  public void test_expanded_nodes_keep_the_game_of_their_children() {
+    Risk game = position(6);
+    RiskAction action = game.getPossibleActions().stream()
+        .filter(a -> game.doAction(a).getCurrentPlayer() >= 0)
+        .findFirst().orElseThrow();
+    RiskGameNode<RiskAction> node = new RiskGameNode<>(new RiskGameNode<>(game), action);
+    Tree<RiskGameNode<RiskAction>> tree = new DoubleLinkedTree<>(node);
+
+    AustraliaFirstAgent agent = new UntimedAgent();
+    agent.setUp(NUMBER_OF_PLAYERS, game.getCurrentPlayer());
+    Risk expanded = (Risk) node.getGame();
+    agent.mcExpansion(tree);
+    agent.tearDown();
+
+    node.clearCachedGame();
+    assertSame(expanded, node.getGame());
+    for (Tree<RiskGameNode<RiskAction>> child : tree.getChildren()) {
+      assertTrue(expanded.isValidAction(child.getNode().getAction()));
+    }
+  }
+
+  /**
+   * Plays a seeded random game until a player is to move after the initial phases.
+   */
+  private static Risk position(long seed) {
+    Random random = new Random(seed);
+    Risk game = new Risk(NUMBER_OF_PLAYERS);
+    for (int i = 0; !game.isGameOver() && (i < 120 || game.getCurrentPlayer() < 0); i++) {
+      RiskAction action = game.getCurrentPlayer() < 0 ? game.determineNextAction(random)
+          : game.sampleRandomAction(random);
+      game = (Risk) game.doAction(action);
+    }
+    return game;
+  }
+
+  /**
+   * Lets the agent decide in the position, checks that the move is legal and that the merged root
+   * children add up the plays of all searched trees.
+   *
+   * @return the searched trees
+   */
+  private static List<Tree<RiskGameNode<RiskAction>>> decide(AustraliaFirstAgent agent,
+      Risk game) {
+    int player = game.getCurrentPlayer();
+    agent.setUp(NUMBER_OF_PLAYERS, player);
+    try {
+      RiskAction action = agent.computeNextAction((Risk) game.getGame(player), 300,
+          TimeUnit.MILLISECONDS);
+      assertTrue(game.isValidAction(action));
+
+      List<Tree<RiskGameNode<RiskAction>>> roots = agent.getSearchedRoots();
+      Map<RiskAction, Integer> plays = new HashMap<>();
+      int totalPlays = 0;
+      for (Tree<RiskGameNode<RiskAction>> root : roots) {
+        for (Tree<RiskGameNode<RiskAction>> child : root.getChildren()) {
+          plays.merge(child.getNode().getAction(), child.getNode().getPlays(),
+              Integer::sum);
+          totalPlays += child.getNode().getPlays();
+        }
+      }
+      int mergedPlays = 0;
+      for (RiskGameNode<RiskAction> merged : agent.mergeRootChildren(roots)) {
+        assertEquals(plays.get(merged.getAction()), merged.getPlays());
+        assertFalse(merged.hasGame());
+        mergedPlays += merged.getPlays();
+      }
+      assertEquals(totalPlays, mergedPlays);
+      assertTrue(totalPlays > 0);
+      return roots;
+    } finally {
+      agent.tearDown();
+    }
+  }
+}
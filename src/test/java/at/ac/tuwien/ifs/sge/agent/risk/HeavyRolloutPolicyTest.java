@@ -0,0 +1,70 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class HeavyRolloutPolicyTest {
+
+  @Test
+  public void test_playouts_are_valid_and_end_the_game() {
+    RolloutPolicy policy = new HeavyRolloutPolicy();
+    Random random = new Random(7);
+    for (int g = 0; g < 5; g++) {
+      Risk game = new Risk(2);
+      int plies = 0;
+      while (!game.isGameOver() && plies++ < 20000) {
+        RiskAction action = game.getCurrentPlayer() < 0 ? game.determineNextAction(random)
+            : policy.nextAction(game, random);
+        assertTrue(game.isValidAction(action), () -> "Invalid action " + action);
+        game.apply(action);
+      }
+      assertTrue(game.isGameOver(), "Playout did not end after " + plies + " plies");
+    }
+  }
+
+  @Test
+  public void test_positions_without_actions_are_rejected() {
+    RolloutPolicy policy = new HeavyRolloutPolicy();
+    Random random = new Random(5);
+    Risk game = new Risk(2);
+    while (!game.isGameOver()) {
+      policy.apply(game, random);
+    }
+    Risk over = game;
+    assertThrows(IllegalStateException.class, () -> policy.nextAction(over, random));
+  }
+
+  @Test
+  public void test_attacks_with_maximum_troops_and_good_odds_or_ends_the_attack() {
+    RolloutPolicy policy = new HeavyRolloutPolicy();
+    Random random = new Random(11);
+    Risk game = new Risk(2);
+    int attacks = 0;
+    while (!game.isGameOver() && attacks < 50) {
+      RiskAction action;
+      if (game.getCurrentPlayer() < 0) {
+        action = game.determineNextAction(random);
+      } else {
+        action = policy.nextAction(game, random);
+        if (game.peekBoard().isAttackPhase() && !action.isEndPhase()) {
+          attacks++;
+          assertEquals(game.peekBoard().getMaxAttackingTroops(action.attackingId()),
+              action.troops());
+          assertTrue(game.getBattleTable().getWinProbability(
+              game.peekBoard().getMobileTroops(action.attackingId()),
+              game.peekBoard().getTerritoryTroops(action.defendingId())) >= 0.6D);
+        } else if (game.peekBoard().isFortifyPhase()) {
+          assertTrue(action.isEndPhase());
+        }
+      }
+      game.apply(action);
+    }
+    assertTrue(attacks > 0);
+  }
+}
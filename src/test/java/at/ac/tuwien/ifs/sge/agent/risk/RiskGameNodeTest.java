@@ -0,0 +1,128 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class RiskGameNodeTest {
+
+  @Test
+  public void test_counts_are_kept_apart() {
+    RiskGameNode<RiskAction> node = new RiskGameNode<>((Risk) null, 3, 0);
+
+    node.incPlays();
+    node.decPlays();
+    node.decPlays();
+    assertEquals(3, node.getWins());
+    assertEquals(-1, node.getPlays());
+
+    node.setPlays(Integer.MAX_VALUE);
+    node.setWins(-5);
+    assertEquals(-5, node.getWins());
+    assertEquals(Integer.MAX_VALUE, node.getPlays());
+  }
+
+  @Test
+  public void test_concurrent_updates_are_not_lost() throws InterruptedException {
+    RiskGameNode<RiskAction> node = new RiskGameNode<>((Risk) null);
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < 100000; i++) {
+          node.incPlays();
+          node.incPlays();
+          node.decPlays();
+          if (i % 2 == 0) {
+            node.incWins();
+          }
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    assertEquals(400000, node.getPlays());
+    assertEquals(200000, node.getWins());
+  }
+
+  @Test
+  public void test_candidates_are_handed_out_in_order_once() {
+    RiskGameNode<RiskAction> node = new RiskGameNode<>((Risk) null);
+    assertFalse(node.hasCandidates());
+    assertNull(node.nextCandidate());
+
+    node.setCandidates(Arrays.asList(RiskAction.reinforce(3, 5), RiskAction.endPhase()));
+    assertTrue(node.hasCandidates());
+    assertEquals(RiskAction.reinforce(3, 5), node.nextCandidate());
+    assertTrue(node.hasCandidates());
+    assertEquals(RiskAction.endPhase(), node.nextCandidate());
+    assertFalse(node.hasCandidates());
+    assertNull(node.nextCandidate());
+
+    node.setCandidates(Collections.emptyList());
+    assertFalse(node.hasCandidates());
+  }
+
+  @Test
+  public void test_lazy_nodes_compute_their_game_on_first_visit_until_pinned() {
+    Risk game = new Risk(2);
+    RiskAction action = game.getPossibleActions().iterator().next();
+    RiskGameNode<RiskAction> root = new RiskGameNode<>(game);
+    RiskGameNode<RiskAction> child = new RiskGameNode<>(root, action);
+    assertFalse(child.hasGame());
+    assertSame(action, child.getAction());
+
+    Risk expected = (Risk) game.doAction(action);
+    Risk computed = (Risk) child.getGame();
+    assertTrue(child.hasGame());
+    assertSame(computed, child.getGame());
+    assertEquals(expected.getZobristKey(), computed.getZobristKey());
+    assertEquals(action, computed.getPreviousAction());
+    RiskGameNode<RiskAction> grandchild =
+        new RiskGameNode<>(child, computed.getPossibleActions().iterator().next());
+
+    child.clearCachedGame();
+    Risk recomputed = (Risk) child.getGame();
+    assertNotSame(computed, recomputed);
+    assertEquals(computed.getZobristKey(), recomputed.getZobristKey());
+    child.pin();
+    child.clearCachedGame();
+    assertSame(recomputed, child.getGame());
+    assertFalse(grandchild.hasGame());
+    assertEquals(expected.getNumberOfActions() + 1, grandchild.getGame().getNumberOfActions());
+  }
+
+  @Test
+  public void test_hashing_lazy_nodes_does_not_compute_their_games() {
+    Risk game = new Risk(2);
+    RiskAction action = game.getPossibleActions().iterator().next();
+    RiskGameNode<RiskAction> root = new RiskGameNode<>(game);
+    RiskGameNode<RiskAction> child = new RiskGameNode<>(root, action);
+    RiskGameNode<RiskAction> twin = new RiskGameNode<>(root, action);
+
+    Set<RiskGameNode<RiskAction>> nodes = new HashSet<>(Arrays.asList(child, twin));
+    assertEquals(2, nodes.size());
+    assertTrue(nodes.contains(child));
+    assertFalse(child.hasGame());
+    assertFalse(twin.hasGame());
+    int hashCode = child.hashCode();
+    child.pin();
+    assertEquals(hashCode, child.hashCode());
+    assertEquals(new RiskGameNode<>(game), root);
+  }
+}
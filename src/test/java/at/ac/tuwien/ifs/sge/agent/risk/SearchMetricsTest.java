@@ -0,0 +1,62 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.ac.tuwien.ifs.sge.agent.risk.SearchMetrics.Phase;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+public class SearchMetricsTest {
+
+  @Test
+  public void test_rates_and_averages() {
+    SearchMetrics metrics = new SearchMetrics();
+    assertEquals(0D, metrics.getAverageRolloutDepth());
+    assertEquals(0D, metrics.getSimulationsPerSecond());
+    assertArrayEquals(new long[0], metrics.getRolloutLengthHistogram());
+
+    metrics.addSelection(2);
+    metrics.addSelection(5);
+    metrics.addExpansion(3);
+    metrics.addExpansion(4);
+    metrics.addSimulation(10);
+    metrics.addSimulation(20);
+    metrics.finish(TimeUnit.MILLISECONDS.toNanos(500), 8);
+
+    assertEquals(2, metrics.getIterations());
+    assertEquals(3.5D, metrics.getAverageSelectionDepth());
+    assertEquals(5, metrics.getMaxSelectionDepth());
+    assertEquals(7, metrics.getExpandedNodes());
+    assertEquals(4, metrics.getMaxExpansionWidth());
+    assertEquals(2, metrics.getSimulations());
+    assertEquals(15D, metrics.getAverageRolloutDepth());
+    assertEquals(4D, metrics.getSimulationsPerSecond(), 1E-9);
+    assertEquals(60D, metrics.getRolloutPliesPerSecond(), 1E-9);
+    assertEquals(8, metrics.getTreeSize());
+  }
+
+  @Test
+  public void test_rollout_lengths_are_bucketed_by_powers_of_two() {
+    SearchMetrics metrics = new SearchMetrics();
+    for (int plies : new int[] {0, 1, 2, 3, 4, 7, 8, 100}) {
+      metrics.addSimulation(plies);
+    }
+
+    assertArrayEquals(new long[] {1, 1, 2, 2, 1, 0, 0, 1}, metrics.getRolloutLengthHistogram());
+  }
+
+  @Test
+  public void test_json_is_a_single_line() {
+    SearchMetrics metrics = new SearchMetrics();
+    metrics.addSimulation(3);
+    metrics.addNanos(Phase.SIMULATION, 42);
+
+    String json = metrics.toJson();
+    assertTrue(json.startsWith("{") && json.endsWith("}"));
+    assertTrue(json.contains("\"rolloutLengthHistogram\":[0,0,1]"));
+    assertTrue(json.contains("\"simulation\":42"));
+    assertEquals(-1, json.indexOf('\n'));
+  }
+}
@@ -0,0 +1,57 @@
+package at.ac.tuwien.ifs.sge.agent.risk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import at.ac.tuwien.ifs.sge.agent.risk.RiskGameNode.Statistics;
+import at.ac.tuwien.ifs.sge.agent.risk.TranspositionTable.ReplacementPolicy;
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import org.junit.jupiter.api.Test;
+
+public class TranspositionTableTest {
+
+  @Test
+  public void test_transposed_nodes_share_statistics() {
+    TranspositionTable table = new TranspositionTable(1000);
+    RiskGameNode<RiskAction> node = new RiskGameNode<>((Risk) null, table.get(42L));
+    RiskGameNode<RiskAction> transposed = new RiskGameNode<>((Risk) null, table.get(42L));
+
+    node.incPlays();
+    node.incWins();
+    transposed.incPlays();
+
+    assertEquals(2, transposed.getPlays());
+    assertEquals(1, transposed.getWins());
+    assertEquals(1, table.getSize());
+    assertEquals(512, table.getCapacity());
+  }
+
+  @Test
+  public void test_fewer_plays_keeps_explored_positions() {
+    TranspositionTable table = new TranspositionTable(2, ReplacementPolicy.FEWER_PLAYS);
+    Statistics explored = table.get(1L);
+    Statistics unexplored = table.get(2L);
+    new RiskGameNode<RiskAction>(null, explored).incPlays();
+
+    table.get(3L);
+
+    assertSame(explored, table.get(1L));
+    assertNotSame(unexplored, table.get(2L));
+    assertEquals(2, table.getSize());
+  }
+
+  @Test
+  public void test_always_replaces_older_entry() {
+    TranspositionTable table = new TranspositionTable(2, ReplacementPolicy.ALWAYS);
+    Statistics older = table.get(1L);
+    Statistics newer = table.get(2L);
+    new RiskGameNode<RiskAction>(null, older).incPlays();
+
+    table.get(3L);
+
+    assertSame(newer, table.get(2L));
+    assertNotSame(older, table.get(1L));
+  }
+}
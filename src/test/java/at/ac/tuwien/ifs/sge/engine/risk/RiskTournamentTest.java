@@ -0,0 +1,150 @@
+package at.ac.tuwien.ifs.sge.engine.risk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.ac.tuwien.ifs.sge.agent.AbstractGameAgent;
+import at.ac.tuwien.ifs.sge.agent.GameAgent;
+import at.ac.tuwien.ifs.sge.agent.risk.RiskAgent;
+import at.ac.tuwien.ifs.sge.engine.Logger;
+import at.ac.tuwien.ifs.sge.engine.risk.RiskTournament.MatchResult;
+import at.ac.tuwien.ifs.sge.engine.risk.RiskTournament.Standing;
+import at.ac.tuwien.ifs.sge.game.risk.board.Risk;
+import at.ac.tuwien.ifs.sge.game.risk.board.RiskAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+public class RiskTournamentTest {
+
+  public static class SamplingAgent extends AbstractGameAgent<Risk, RiskAction> implements
+      GameAgent<Risk, RiskAction> {
+
+    public SamplingAgent(Logger log) {
+      super(log);
+    }
+
+    @Override
+    public RiskAction computeNextAction(Risk game, long computationTime, TimeUnit timeUnit) {
+      return game.sampleRandomAction(random);
+    }
+  }
+
+  public static class IllegalAgent extends SamplingAgent {
+
+    public IllegalAgent(Logger log) {
+      super(log);
+    }
+
+    @Override
+    public RiskAction computeNextAction(Risk game, long computationTime, TimeUnit timeUnit) {
+      return RiskAction.select(-1);
+    }
+  }
+
+  public static class HangingAgent extends SamplingAgent {
+
+    public HangingAgent(Logger log) {
+      super(log);
+    }
+
+    /**
+     * Ignores interrupts and answers long after its time ran out.
+     */
+    @Override
+    public RiskAction computeNextAction(Risk game, long computationTime, TimeUnit timeUnit) {
+      long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+      while (System.nanoTime() < end) {
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          // keeps hanging
+        }
+      }
+      return super.computeNextAction(game, computationTime, timeUnit);
+    }
+  }
+
+  public static class FailingAgent extends SamplingAgent {
+
+    public FailingAgent(Logger log) {
+      super(log);
+    }
+
+    @Override
+    public void setUp(int numberOfPlayers, int playerId) {
+      throw new AssertionError("set up failed");
+    }
+  }
+
+  private static RiskTournament tournament(String... args) {
+    RiskTournament tournament = new RiskTournament();
+    new CommandLine(tournament).parseArgs(args);
+    return tournament;
+  }
+
+  @Test
+  public void test_every_group_plays_and_ratings_are_zero_sum() throws Exception {
+    List<MatchResult> results = new ArrayList<>();
+    List<Standing> standings = tournament("-n", "3", "-t", "2", "-m", "2000",
+        RiskAgent.class.getName(), SamplingAgent.class.getName(),
+        SamplingAgent.class.getName()).play(results);
+
+    assertEquals(9, results.size());
+    assertEquals("SamplingAgent#3", standings.get(2).name);
+    double elo = 0;
+    for (Standing standing : standings) {
+      assertEquals(6, standing.matches);
+      assertEquals(standing.matches, standing.wins + standing.draws + standing.losses);
+      assertEquals(0, standing.disqualifications);
+      elo += standing.elo;
+    }
+    assertEquals(3 * 1500D, elo, 1E-9);
+    for (MatchResult result : results) {
+      assertNotEquals(result.match.seats[0], result.match.seats[1]);
+    }
+  }
+
+  @Test
+  public void test_illegal_actions_disqualify() throws Exception {
+    List<MatchResult> results = new ArrayList<>();
+    List<Standing> standings = tournament("-n", "2", "-t", "1",
+        SamplingAgent.class.getName(), IllegalAgent.class.getName()).play(results);
+
+    assertEquals(2, standings.get(1).disqualifications);
+    assertEquals(2, standings.get(1).losses);
+    assertEquals(2, standings.get(0).wins);
+    assertEquals(1, results.get(0).match.seats[1]);
+    assertEquals(1, results.get(1).match.seats[0]);
+  }
+
+  @Test
+  public void test_agents_which_do_not_answer_in_time_are_disqualified() throws Exception {
+    List<MatchResult> results = new ArrayList<>();
+    long startTime = System.nanoTime();
+    List<Standing> standings = tournament("-n", "2", "-t", "1", "-c", "50",
+        SamplingAgent.class.getName(), HangingAgent.class.getName()).play(results);
+
+    assertEquals(2, standings.get(1).disqualifications);
+    assertEquals(2, standings.get(0).wins);
+    // neither match waited for the hanging agent to answer
+    assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(2));
+  }
+
+  @Test
+  public void test_errors_of_matches_are_rethrown() {
+    AssertionError error = assertThrows(AssertionError.class, () -> tournament("-n", "1",
+        SamplingAgent.class.getName(), FailingAgent.class.getName()).play(new ArrayList<>()));
+    assertEquals("set up failed", error.getMessage());
+  }
+
+  @Test
+  public void test_more_players_than_agents_are_rejected() {
+    assertThrows(IllegalArgumentException.class, () -> tournament("-p", "3",
+        SamplingAgent.class.getName(), SamplingAgent.class.getName()).play(new ArrayList<>()));
+  }
+}
@@ -0,0 +1,52 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import at.ac.tuwien.ifs.sge.game.ActionRecord;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class ActionHistoryTest {
+
+  @Test
+  public void test_history_matches_list() {
+    List<ActionRecord<RiskAction>> expected = new ArrayList<>();
+    ActionHistory<RiskAction> history = ActionHistory.empty();
+    List<ActionHistory<RiskAction>> prefixes = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      prefixes.add(history);
+      ActionRecord<RiskAction> actionRecord = new ActionRecord<>(i % 3, RiskAction.select(i));
+      expected.add(actionRecord);
+      history = history.append(actionRecord);
+      if (i % 7 == 0) {
+        assertEquals(expected, history);
+      }
+    }
+
+    assertEquals(expected, history);
+    assertSame(expected.get(49), history.get(49));
+    assertSame(prefixes.get(49), history.getParent());
+    for (int i = 0; i < prefixes.size(); i++) {
+      assertEquals(expected.subList(0, i), prefixes.get(i));
+    }
+    assertThrows(IndexOutOfBoundsException.class, () -> prefixes.get(3).get(3));
+    assertThrows(UnsupportedOperationException.class,
+        () -> prefixes.get(3).add(expected.get(0)));
+  }
+
+  @Test
+  public void test_successor_shares_history() {
+    Risk game = new Risk();
+    int territoryId = game.getBoard().getTerritoryIdArray()[0];
+    Risk next = (Risk) game.doAction(RiskAction.select(territoryId));
+
+    assertEquals(0, game.getActionRecords().size());
+    assertEquals(1, next.getActionRecords().size());
+    assertSame(game.getActionRecords(),
+        ((ActionHistory<RiskAction>) next.getActionRecords()).getParent());
+    assertEquals(RiskAction.select(territoryId), next.getPreviousAction());
+  }
+}
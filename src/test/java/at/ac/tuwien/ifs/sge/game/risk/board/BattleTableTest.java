@@ -0,0 +1,83 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+public class BattleTableTest {
+
+  @Test
+  public void test_round_probabilities_match_the_dice() {
+    BattleTable table = new BattleTable(3, 2, 8);
+
+    assertEquals(21D / 36D, table.getRoundProbability(1, 1, 1), 1E-12);
+    assertEquals(2890D / 7776D, table.getRoundProbability(3, 2, 0), 1E-12);
+    assertEquals(2611D / 7776D, table.getRoundProbability(3, 2, 1), 1E-12);
+    assertEquals(2275D / 7776D, table.getRoundProbability(3, 2, 2), 1E-12);
+    assertEquals(0D, table.getRoundProbability(3, 2, 3));
+    assertEquals(295D / 1296D, table.getRoundProbability(2, 2, 0), 1E-12);
+  }
+
+  @Test
+  public void test_battle_outcomes_are_consistent() {
+    BattleTable table = new BattleTable(3, 2, 16);
+
+    assertEquals(15D / 36D, table.getWinProbability(1, 1), 1E-12);
+    // losing one of one attacker or one of one defender
+    assertEquals(21D / 36D, table.getExpectedAttackerLosses(1, 1), 1E-12);
+    assertEquals(15D / 36D, table.getExpectedDefenderLosses(1, 1), 1E-12);
+    for (int a = 1; a <= 16; a++) {
+      for (int d = 1; d <= 16; d++) {
+        double win = table.getWinProbability(a, d);
+        // the loser loses everything, the winner at least nothing
+        assertTrue(table.getExpectedAttackerLosses(a, d) >= (1D - win) * a - 1E-9);
+        assertTrue(table.getExpectedDefenderLosses(a, d) >= win * d - 1E-9);
+        if (a > 1) {
+          assertTrue(win >= table.getWinProbability(a - 1, d));
+        }
+      }
+    }
+    assertThrows(IllegalArgumentException.class, () -> table.getWinProbability(17, 1));
+  }
+
+  @Test
+  public void test_sampled_battles_follow_the_table() {
+    BattleTable table = new BattleTable(3, 2, 8);
+    Random random = new Random(3);
+    int battles = 100000;
+    int wins = 0;
+    long attackerLosses = 0;
+    for (int i = 0; i < battles; i++) {
+      int outcome = table.sampleBattle(6, 4, random);
+      if (outcome > 0) {
+        wins++;
+        attackerLosses += 6 - outcome;
+      } else {
+        attackerLosses += 6;
+      }
+    }
+
+    assertEquals(table.getWinProbability(6, 4), (double) wins / battles, 0.01);
+    assertEquals(table.getExpectedAttackerLosses(6, 4), (double) attackerLosses / battles, 0.05);
+  }
+
+  @Test
+  public void test_battles_beyond_the_cap_are_sampled() {
+    BattleTable table = new BattleTable(3, 2, 4);
+    Random random = new Random(5);
+    for (int i = 0; i < 1000; i++) {
+      int outcome = table.sampleBattle(30, 20, random);
+      assertTrue(outcome != 0 && -20 <= outcome && outcome <= 30);
+    }
+  }
+
+  @Test
+  public void test_tables_of_the_same_dice_are_shared() {
+    assertSame(BattleTable.of(3, 2), BattleTable.of(3, 2));
+    assertEquals(BattleTable.DEFAULT_CAP, BattleTable.of(3, 2).getCap());
+  }
+}
@@ -0,0 +1,57 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+public class RiskActionTest {
+
+  @Test
+  public void test_encode_decode_round_trip() {
+    List<RiskAction> actions = List.of(RiskAction.select(0), RiskAction.select(41),
+        RiskAction.reinforce(7, 12), RiskAction.attack(3, 4, 3), RiskAction.attack(0, 41, 1),
+        RiskAction.occupy(5), RiskAction.fortify(12, 0, 30), RiskAction.endPhase(),
+        RiskAction.casualties(2, 0), RiskAction.casualties(1, 1), RiskAction.casualties(0, 2),
+        RiskAction.playCards(0, 2, 4), RiskAction.cardSlots(0b111),
+        RiskAction.bonusTroopsFromCards(2), RiskAction.attack(Short.MAX_VALUE, 0, 1000000));
+
+    for (RiskAction action : actions) {
+      RiskAction decoded = RiskAction.decode(action.encode());
+      assertEquals(action, decoded);
+      assertEquals(action.encode(), decoded.encode());
+    }
+    assertTrue(RiskAction.decode(RiskAction.endPhase().encode()).isEndPhase());
+    assertEquals(1, RiskAction.decode(RiskAction.casualties(1, 2).encode()).attackerCasualties());
+    assertEquals(2, RiskAction.decode(RiskAction.casualties(1, 2).encode()).defenderCasualties());
+  }
+
+  @Test
+  public void test_small_actions_are_interned() {
+    assertSame(RiskAction.select(3), RiskAction.select(3));
+    assertSame(RiskAction.reinforce(7, 12), RiskAction.reinforce(7, 12));
+    assertSame(RiskAction.attack(3, 4, 3), RiskAction.attack(3, 4, 3));
+    assertSame(RiskAction.fortify(12, 0, 30), RiskAction.fortify(12, 0, 30));
+    assertSame(RiskAction.occupy(5), RiskAction.occupy(5));
+    assertSame(RiskAction.casualties(1, 2), RiskAction.casualties(1, 2));
+    assertSame(RiskAction.bonusTroopsFromCards(2), RiskAction.bonusTroopsFromCards(2));
+    assertSame(RiskAction.playCards(0, 2, 4), RiskAction.playCards(0, 2, 4));
+    assertSame(RiskAction.attack(3, 4, 3), RiskAction.decode(RiskAction.attack(3, 4, 3).encode()));
+    assertSame(RiskAction.endPhase(), RiskAction.decode(RiskAction.endPhase().encode()));
+  }
+
+  @Test
+  public void test_large_actions_are_equal_but_not_interned() {
+    RiskAction action = RiskAction.attack(100, 3, 2);
+    RiskAction other = RiskAction.attack(100, 3, 2);
+
+    assertNotSame(action, other);
+    assertEquals(action, other);
+    assertEquals(action.hashCode(), other.hashCode());
+    assertNotSame(RiskAction.reinforce(2, 500), RiskAction.reinforce(2, 500));
+    assertEquals(RiskAction.reinforce(2, 500), RiskAction.reinforce(2, 500));
+  }
+}
@@ -0,0 +1,242 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.ac.tuwien.ifs.sge.game.risk.configuration.RiskConfiguration;
+import at.ac.tuwien.ifs.sge.util.Util;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+public class RiskBoardTest {
+
+  @Test
+  public void test_territories_snapshot_matches_queries() {
+    RiskBoard board = new Risk().getBoard();
+    Map<Integer, RiskTerritory> territories = board.getTerritories();
+
+    assertEquals(board.getTerritoryIds(), territories.keySet());
+    for (int p = 0; p < board.getNumberOfPlayers(); p++) {
+      Set<Integer> occupied = new HashSet<>();
+      for (Map.Entry<Integer, RiskTerritory> entry : territories.entrySet()) {
+        int territoryId = entry.getKey();
+        assertEquals(entry.getValue().getOccupantPlayerId(),
+            board.getTerritoryOccupantId(territoryId));
+        assertEquals(entry.getValue().getTroops(), board.getTerritoryTroops(territoryId));
+        assertEquals(entry.getValue().getContinentId(), board.getTerritoryContinentId(territoryId));
+        if (entry.getValue().getOccupantPlayerId() == p) {
+          occupied.add(territoryId);
+        }
+      }
+      assertEquals(occupied, board.getTerritoriesOccupiedByPlayer(p));
+      assertEquals(occupied.size(), board.getNrOfTerritoriesOccupiedByPlayer(p));
+    }
+    assertFalse(board.isTerritory(-1));
+    assertFalse(board.isTerritory(territories.size()));
+  }
+
+  @Test
+  public void test_zobrist_key_tells_if_the_initial_phases_are_running() {
+    RiskBoard board = new Risk(2).getBoard();
+    RiskBoard notSelecting = new RiskBoard(board);
+    notSelecting.disableInitialSelectMaybe();
+    RiskBoard notReinforcing = new RiskBoard(board);
+    notReinforcing.disableInitialReinforceMaybe();
+
+    assertTrue(board.getZobristKey(0) != notSelecting.getZobristKey(0));
+    assertTrue(board.getZobristKey(0) != notReinforcing.getZobristKey(0));
+    assertTrue(notSelecting.getZobristKey(0) != notReinforcing.getZobristKey(0));
+
+    Random random = new Random(3);
+    Risk game = new Risk(2);
+    while (game.getBoard().getNrOfTerritoriesOccupiedByPlayer(-1) > 0) {
+      game = (Risk) game.doAction(game.sampleRandomAction(random));
+    }
+    RiskBoard selected = game.getBoard();
+    RiskBoard disabled = new RiskBoard(selected);
+    disabled.disableInitialSelectMaybe();
+    // once all territories are selected the flag only caches what the key already knows
+    assertEquals(selected.getZobristKey(0), disabled.getZobristKey(0));
+  }
+
+  @Test
+  public void test_zobrist_key_tells_attacked_territories_from_attacking_troops() {
+    RiskBoard board = new Risk(2).getBoard();
+    RiskBoard attack = new RiskBoard(board);
+    attack.startAttack(-1, 0, 1);
+    RiskBoard otherAttack = new RiskBoard(board);
+    otherAttack.startAttack(-1, 1, 2);
+
+    assertTrue(board.getZobristKey(0) != attack.getZobristKey(0));
+    assertTrue(board.getZobristKey(0) != otherAttack.getZobristKey(0));
+    assertTrue(attack.getZobristKey(0) != otherAttack.getZobristKey(0));
+  }
+
+  @Test
+  public void test_copy_does_not_share_territory_state() {
+    Risk game = new Risk();
+    int territoryId = game.getBoard().getTerritoryIdArray()[0];
+    RiskBoard board = ((Risk) game.doAction(RiskAction.select(territoryId))).getBoard();
+    int troops = board.getTerritoryTroops(territoryId);
+
+    RiskBoard copy = new RiskBoard(board);
+    copy.reinforce(copy.getTerritoryOccupantId(territoryId), territoryId, 2);
+
+    assertEquals(troops + 2, copy.getTerritoryTroops(territoryId));
+    assertEquals(troops, board.getTerritoryTroops(territoryId));
+    assertEquals(troops, board.getTerritories().get(territoryId).getTroops());
+    assertTrue(copy.isReinforcedAlready(territoryId));
+    assertFalse(board.isReinforcedAlready(territoryId));
+  }
+
+  @Test
+  public void test_original_writes_do_not_leak_into_copy() {
+    Risk game = new Risk();
+    int territoryId = game.getBoard().getTerritoryIdArray()[0];
+    RiskBoard board = ((Risk) game.doAction(RiskAction.select(territoryId))).getBoard();
+    int owner = board.getTerritoryOccupantId(territoryId);
+    int troops = board.getTerritoryTroops(territoryId);
+    int reinforcements = board.reinforcementsLeft(owner);
+
+    RiskBoard copy = new RiskBoard(board);
+    board.reinforce(owner, territoryId, 1);
+    RiskBoard copyOfCopy = new RiskBoard(copy);
+    copy.reinforce(owner, territoryId, 3);
+
+    assertEquals(troops + 1, board.getTerritoryTroops(territoryId));
+    assertEquals(troops + 3, copy.getTerritoryTroops(territoryId));
+    assertEquals(troops, copyOfCopy.getTerritoryTroops(territoryId));
+    assertEquals(reinforcements - 1, board.reinforcementsLeft(owner));
+    assertEquals(reinforcements - 3, copy.reinforcementsLeft(owner));
+    assertEquals(reinforcements, copyOfCopy.reinforcementsLeft(owner));
+    assertFalse(copyOfCopy.isReinforcedAlready(territoryId));
+  }
+
+  @Test
+  public void test_territory_queries_follow_ownership_changes() {
+    Random random = new Random(3);
+    Risk game = new Risk(3);
+
+    for (int ply = 0; ply < 2000 && !game.isGameOver(); ply++) {
+      if (ply % 10 == 0) {
+        assertTerritoryQueries(game.getBoard());
+      }
+      game.apply(game.getCurrentPlayer() < 0 ? game.determineNextAction()
+          : Util.selectRandom(game.getPossibleActions(), random));
+    }
+    while (game.undo()) {
+      if (game.getNumberOfActions() % 10 == 0) {
+        assertTerritoryQueries(game.getBoard());
+      }
+    }
+  }
+
+  private static void assertTerritoryQueries(RiskBoard board) {
+    for (int territoryId : board.getTerritoryIds()) {
+      int self = board.getTerritoryOccupantId(territoryId);
+      Set<Integer> enemies = new HashSet<>();
+      Set<Integer> friends = new HashSet<>();
+      for (int neighborId : board.neighboringTerritories(territoryId)) {
+        assertTrue(board.areNeighbors(territoryId, neighborId));
+        assertTrue(board.areNeighbors(neighborId, territoryId));
+        (board.getTerritoryOccupantId(neighborId) == self ? friends : enemies).add(neighborId);
+      }
+      assertFalse(board.areNeighbors(territoryId, territoryId));
+      assertEquals(enemies, board.neighboringEnemyTerritories(territoryId));
+      assertEquals(friends, board.neighboringFriendlyTerritories(territoryId));
+      assertEquals(enemies.size(), board.getNrOfNeighboringEnemyTerritories(territoryId));
+      assertEquals(friends.size(), board.getNrOfNeighboringFriendlyTerritories(territoryId));
+    }
+    int livingPlayers = 0;
+    for (int p = -1; p < board.getNumberOfPlayers(); p++) {
+      Set<Integer> occupied = new HashSet<>();
+      for (int territoryId : board.getTerritoryIds()) {
+        if (board.getTerritoryOccupantId(territoryId) == p) {
+          occupied.add(territoryId);
+        }
+      }
+      assertEquals(occupied, board.getTerritoriesOccupiedByPlayer(p));
+      assertEquals(occupied.size(), board.getNrOfTerritoriesOccupiedByPlayer(p));
+      assertEquals(!occupied.isEmpty(), board.isPlayerStillAlive(p));
+      if (p >= 0 && !occupied.isEmpty()) {
+        livingPlayers++;
+      }
+    }
+    assertEquals(livingPlayers, board.getNrOfLivingPlayers());
+    assertTrue(board.neighboringTerritories(-1).isEmpty());
+    assertTrue(board.neighboringEnemyTerritories(-1).isEmpty());
+    assertFalse(board.areNeighbors(-1, 0));
+  }
+
+  @Test
+  public void test_fortifyable_territories_follow_ownership_changes() {
+    RiskConfiguration configuration = (RiskConfiguration) RiskConfiguration.getYaml()
+        .load(RiskConfiguration.getYaml().dump(RiskConfiguration.RISK_DEFAULT_CONFIG));
+    configuration.setFortifyOnlyFromSingleTerritory(false);
+    Random random = new Random(5);
+    Risk game = new Risk(configuration, 3);
+
+    for (int ply = 0; ply < 2000 && !game.isGameOver(); ply++) {
+      if (ply % 10 == 0) {
+        assertFortifyableTerritories(game.getBoard());
+        // copies share the components until either side changes an occupant
+        game = new Risk(game);
+      }
+      game.apply(game.getCurrentPlayer() < 0 ? game.determineNextAction()
+          : Util.selectRandom(game.getPossibleActions(), random));
+    }
+    while (game.undo()) {
+      if (game.getNumberOfActions() % 10 == 0) {
+        assertFortifyableTerritories(game.getBoard());
+      }
+    }
+  }
+
+  private static void assertFortifyableTerritories(RiskBoard board) {
+    for (int territoryId : board.getTerritoryIds()) {
+      Set<Integer> reachable = new HashSet<>();
+      if (board.getTerritoryOccupantId(territoryId) >= 0) {
+        Deque<Integer> queue = new ArrayDeque<>(Set.of(territoryId));
+        while (!queue.isEmpty()) {
+          for (int neighborId : board.neighboringFriendlyTerritories(queue.poll())) {
+            if (neighborId != territoryId && reachable.add(neighborId)) {
+              queue.add(neighborId);
+            }
+          }
+        }
+      }
+      assertEquals(reachable, board.getFortifyableTerritories(territoryId));
+      for (int otherId : board.getTerritoryIds()) {
+        if (otherId != territoryId) {
+          assertEquals(reachable.contains(otherId), board.canFortify(territoryId, otherId));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void test_rollback_does_not_leak_into_copy_taken_after_savepoint() {
+    Risk game = new Risk();
+    int territoryId = game.getBoard().getTerritoryIdArray()[0];
+    int otherId = game.getBoard().getTerritoryIdArray()[1];
+    RiskBoard board = ((Risk) game.doAction(RiskAction.select(territoryId))).getBoard();
+    int owner = board.getTerritoryOccupantId(territoryId);
+    board.reinforce(owner, territoryId, 1);
+
+    board.savepoint();
+    RiskBoard copy = new RiskBoard(board);
+    board.rollback();
+    board.reinforce(owner, otherId, 1);
+
+    assertTrue(board.isReinforcedAlready(otherId));
+    assertFalse(copy.isReinforcedAlready(otherId));
+    assertTrue(copy.isReinforcedAlready(territoryId));
+    assertEquals(board.reinforcementsLeft(owner) + 1, copy.reinforcementsLeft(owner));
+  }
+}
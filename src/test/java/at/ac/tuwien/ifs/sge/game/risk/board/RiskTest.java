@@ -0,0 +1,333 @@
+package at.ac.tuwien.ifs.sge.game.risk.board;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import at.ac.tuwien.ifs.sge.util.Util;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+public class RiskTest {
+
+  private static String fingerprint(Risk game) {
+    StringBuilder builder = new StringBuilder(boardFingerprint(game));
+    RiskBoard board = game.getBoard();
+    for (int p = 0; p < game.getNumberOfPlayers(); p++) {
+      builder.append('|').append(board.getPlayerCards(p));
+    }
+    return builder.toString();
+  }
+
+  // card identities are left out as reshuffling the discard pile is not reproducible
+  private static String boardFingerprint(Risk game) {
+    RiskBoard board = game.getBoard();
+    StringBuilder builder = new StringBuilder();
+    builder.append(game.getCurrentPlayer()).append('|')
+        .append(game.getNumberOfActions()).append('|')
+        .append(new TreeSet<>(game.getPossibleActions().stream().map(RiskAction::toString)
+            .collect(Collectors.toSet()))).append('|');
+    for (int territoryId : board.getTerritoryIdArray()) {
+      builder.append(territoryId).append(':')
+          .append(board.getTerritoryOccupantId(territoryId)).append(':')
+          .append(board.getTerritoryTroops(territoryId)).append(':')
+          .append(board.isReinforcedAlready(territoryId)).append(',');
+    }
+    for (int p = 0; p < game.getNumberOfPlayers(); p++) {
+      builder.append('|').append(board.reinforcementsLeft(p))
+          .append('/').append(board.getPlayerCards(p).size());
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void test_apply_matches_doAction_and_undo_restores() {
+    Random random = new Random(42);
+    Risk game = new Risk(3);
+    List<String> fingerprints = new ArrayList<>();
+
+    for (int ply = 0; ply < 1500 && !game.isGameOver(); ply++) {
+      fingerprints.add(fingerprint(game));
+      RiskAction action = game.getCurrentPlayer() < 0 ? game.determineNextAction()
+          : Util.selectRandom(game.getPossibleActions(), random);
+      Risk expected = (Risk) game.doAction(action);
+      game.apply(action);
+      assertEquals(boardFingerprint(expected), boardFingerprint(game));
+    }
+
+    for (int i = fingerprints.size() - 1; i >= 0; i--) {
+      game.undo();
+      assertEquals(fingerprints.get(i), fingerprint(game));
+    }
+    assertFalse(game.undo());
+  }
+
+  @Test
+  public void test_apply_without_undo_matches_doAction_and_keeps_no_savepoints() {
+    Random random = new Random(42);
+    Risk source = new Risk(3);
+    for (int ply = 0; ply < 200; ply++) {
+      source.apply(source.getCurrentPlayer() < 0 ? source.determineNextAction(random)
+          : source.sampleRandomAction(random));
+    }
+    String sourceFingerprint = boardFingerprint(source);
+    Risk game = new Risk(source);
+    game.apply(game.sampleRandomAction(random));
+    game.setUndoable(false);
+    assertEquals(0, game.peekBoard().getSavepointDepth());
+
+    for (int ply = 0; ply < 1500 && !game.isGameOver(); ply++) {
+      RiskAction action = game.getCurrentPlayer() < 0 ? game.determineNextAction(random)
+          : game.sampleRandomAction(random);
+      Risk expected = (Risk) game.doAction(action);
+      game.apply(action);
+      assertEquals(boardFingerprint(expected), boardFingerprint(game));
+      assertEquals(0, game.peekBoard().getSavepointDepth());
+    }
+    assertFalse(game.undo());
+    assertEquals(sourceFingerprint, boardFingerprint(source));
+  }
+
+  @Test
+  public void test_apply_rejects_illegal_action_without_changes() {
+    Risk game = new Risk();
+    String before = fingerprint(game);
+
+    assertThrows(IllegalArgumentException.class, () -> game.apply(RiskAction.select(-1)));
+    assertEquals(before, fingerprint(game));
+    assertFalse(game.undo());
+  }
+
+  @Test
+  public void test_buffer_matches_possible_actions() {
+    Random random = new Random(7);
+    Risk game = new Risk(3);
+    long[] buffer = new long[64];
+    long[] small = new long[3];
+
+    for (int ply = 0; ply < 1500 && !game.isGameOver(); ply++) {
+      Set<RiskAction> possibleActions = game.getPossibleActions();
+      int size = game.getPossibleActions(buffer);
+      if (size > buffer.length) {
+        buffer = new long[size];
+        assertEquals(size, game.getPossibleActions(buffer));
+      }
+      assertEquals(possibleActions.size(), size);
+      Set<RiskAction> decoded = new HashSet<>();
+      for (int i = 0; i < size; i++) {
+        decoded.add(RiskAction.decode(buffer[i]));
+      }
+      assertEquals(possibleActions, decoded);
+
+      assertEquals(size, game.getPossibleActions(small));
+      for (int i = 0; i < Math.min(size, small.length); i++) {
+        assertEquals(buffer[i], small[i]);
+      }
+
+      game.apply(game.getCurrentPlayer() < 0 ? game.determineNextAction()
+          : Util.selectRandom(possibleActions, random));
+    }
+  }
+
+  @Test
+  public void test_sampled_actions_are_uniform_over_possible_actions() {
+    Random random = new Random(11);
+    Risk game = new Risk(3);
+
+    for (int ply = 0; ply < 1500 && !game.isGameOver(); ply++) {
+      Set<RiskAction> possibleActions = game.getPossibleActions();
+      if (possibleActions.size() <= 40) {
+        int samples = 200 * possibleActions.size();
+        Map<RiskAction, Integer> counts = new HashMap<>();
+        for (int i = 0; i < samples; i++) {
+          counts.merge(game.sampleRandomAction(random), 1, Integer::sum);
+        }
+        assertEquals(possibleActions, counts.keySet());
+        for (int count : counts.values()) {
+          assertTrue(100 < count && count < 300, () -> "skewed sample counts " + counts);
+        }
+      } else {
+        for (int i = 0; i < 20; i++) {
+          assertTrue(possibleActions.contains(game.sampleRandomAction(random)));
+        }
+      }
+
+      game.apply(game.getCurrentPlayer() < 0 ? game.determineNextAction()
+          : game.sampleRandomAction(random));
+    }
+    if (game.isGameOver()) {
+      assertNull(game.sampleRandomAction(random));
+    }
+  }
+
+  @Test
+  public void test_seeded_chance_outcomes_are_possible_and_reproducible() {
+    Random random = new Random(23);
+    Risk game = new Risk(3);
+    int chanceNodes = 0;
+
+    for (int ply = 0; ply < 1500 && !game.isGameOver(); ply++) {
+      RiskAction action;
+      if (game.getCurrentPlayer() < 0) {
+        long seed = random.nextLong();
+        action = game.determineNextAction(new Random(seed));
+        assertEquals(action, game.determineNextAction(new Random(seed)));
+        assertTrue(game.getPossibleActions().contains(action), () -> game.toString());
+        chanceNodes++;
+      } else {
+        action = game.sampleRandomAction(random);
+      }
+      game.apply(action);
+    }
+    assertTrue(chanceNodes > 0);
+  }
+
+  @Test
+  public void test_whole_battles_conquer_or_exhaust_and_are_undone() {
+    Random random = new Random(29);
+    Risk game = new Risk(2);
+    int battles = 0;
+
+    for (int ply = 0; ply < 3000 && !game.isGameOver() && battles < 20; ply++) {
+      RiskAction action = game.getCurrentPlayer() < 0 ? game.determineNextAction(random)
+          : game.sampleRandomAction(random);
+      RiskBoard board = game.peekBoard();
+      if (game.getCurrentPlayer() >= 0 && board.isAttackPhase() && !action.isEndPhase()
+          && !action.isCardIds()) {
+        int player = game.getCurrentPlayer();
+        String before = fingerprint(game);
+        int actions = game.getNumberOfActions();
+
+        game.applyBattle(action.attackingId(), action.defendingId(), random);
+        battles++;
+        assertEquals(actions + 2, game.getNumberOfActions());
+        assertEquals(player, game.getCurrentPlayer());
+        if (board.getTerritoryOccupantId(action.defendingId()) == player) {
+          assertTrue(board.isOccupyPhase());
+        } else {
+          assertEquals(1, board.getTerritoryTroops(action.attackingId()));
+          assertTrue(board.isAttackPhase());
+        }
+
+        assertTrue(game.undo());
+        assertTrue(game.undo());
+        assertEquals(before, fingerprint(game));
+      }
+      game.apply(action);
+    }
+    assertTrue(battles > 0);
+  }
+
+  @Test
+  public void test_game_over_and_utilities_match_territory_owners() {
+    Random random = new Random(13);
+    Risk game = new Risk(2);
+
+    for (int ply = 0; ply < 5000 && !game.isGameOver(); ply++) {
+      assertGameOverMatchesOwners(game);
+      game.apply(game.getCurrentPlayer() < 0 ? game.determineNextAction()
+          : game.sampleRandomAction(random));
+    }
+    assertGameOverMatchesOwners(game);
+    while (game.undo()) {
+      assertGameOverMatchesOwners(game);
+    }
+  }
+
+  private static void assertGameOverMatchesOwners(Risk game) {
+    RiskBoard board = game.getBoard();
+    Set<Integer> owners = new HashSet<>();
+    for (int territoryId : board.getTerritoryIdArray()) {
+      owners.add(board.getTerritoryOccupantId(territoryId));
+    }
+    boolean gameOver = owners.size() == 1 && !owners.contains(-1);
+    double[] utilityValues = new double[game.getNumberOfPlayers()];
+    if (gameOver) {
+      utilityValues[owners.iterator().next()] = 1D;
+    }
+
+    assertEquals(gameOver, game.isGameOver());
+    assertArrayEquals(utilityValues, game.getGameUtilityValue());
+    for (int p = 0; p < game.getNumberOfPlayers(); p++) {
+      assertEquals(utilityValues[p], game.getUtilityValue(p));
+    }
+  }
+
+  @Test
+  public void test_zobrist_key_is_restored_by_undo_and_separates_positions() {
+    Random random = new Random(17);
+    Risk game = new Risk(3);
+    List<Long> keys = new ArrayList<>();
+    Set<Long> distinctKeys = new HashSet<>();
+
+    for (int ply = 0; ply < 1500 && !game.isGameOver(); ply++) {
+      keys.add(game.getZobristKey());
+      distinctKeys.add(game.getZobristKey());
+      RiskAction action = game.getCurrentPlayer() < 0 ? game.determineNextAction()
+          : game.sampleRandomAction(random);
+      Risk next = (Risk) game.doAction(action);
+      game.apply(action);
+      if (fingerprint(next).equals(fingerprint(game))) {
+        assertEquals(next.getZobristKey(), game.getZobristKey());
+      }
+    }
+    // troops only grow back and forth rarely, nearly every position of a game is new
+    assertTrue(distinctKeys.size() > keys.size() * 9 / 10);
+
+    for (int i = keys.size() - 1; i >= 0; i--) {
+      game.undo();
+      assertEquals(keys.get(i), game.getZobristKey());
+    }
+  }
+
+  @Test
+  public void test_zobrist_key_depends_on_position_only() {
+    Random random = new Random(19);
+    Risk game = new Risk(2);
+    int transpositions = 0;
+
+    for (int ply = 0; ply < 1500 && !game.isGameOver(); ply++) {
+      List<RiskAction> reinforcements = new ArrayList<>();
+      if (game.getCurrentPlayer() >= 0 && game.getBoard().isReinforcementPhase()) {
+        for (RiskAction action : game.getPossibleActions()) {
+          if (action.equals(RiskAction.reinforce(action.reinforcedId(), 1))) {
+            reinforcements.add(action);
+          }
+        }
+      }
+      if (reinforcements.size() >= 2) {
+        RiskAction a = reinforcements.get(0);
+        RiskAction b = reinforcements.get(1);
+        Risk ab = (Risk) game.doAction(a);
+        Risk ba = (Risk) game.doAction(b);
+        // during the initial phases every selection passes the turn on
+        if (ab.getCurrentPlayer() == game.getCurrentPlayer()
+            && ba.getCurrentPlayer() == game.getCurrentPlayer()
+            && ab.isValidAction(b) && ba.isValidAction(a)) {
+          ab = (Risk) ab.doAction(b);
+          ba = (Risk) ba.doAction(a);
+          if (boardFingerprint(ab).equals(boardFingerprint(ba))) {
+            assertEquals(ab.getZobristKey(), ba.getZobristKey());
+            transpositions++;
+          } else {
+            assertTrue(ab.getZobristKey() != ba.getZobristKey());
+          }
+        }
+      }
+      game.apply(game.getCurrentPlayer() < 0 ? game.determineNextAction()
+          : game.sampleRandomAction(random));
+    }
+    assertTrue(transpositions > 0);
+  }
+}